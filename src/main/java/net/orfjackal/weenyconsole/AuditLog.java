@@ -0,0 +1,286 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends the executed commands to a file, one line per command. The callers only copy the
+ * command into a preallocated ring buffer, from which a background thread formats and writes
+ * them in batches. When the buffer is full, the commands are either dropped or the callers wait
+ * for free space, as chosen by the {@link OverflowPolicy}.
+ * <p/>
+ * The lines are of the form <tt>timeMillis TAB durationMicros TAB outcome TAB command</tt>,
+ * where the outcome is <tt>OK</tt> or the name of the exception which the command threw.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class AuditLog implements CommandAuditor {
+
+    public enum OverflowPolicy {
+        DROP, BLOCK
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    // set in the claimed sequence when no more slots may be claimed
+    private static final long CLAIMS_CLOSED = 1L << 62;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final FileChannel channel;
+    private final Thread writer;
+    private volatile boolean closed = false;
+    private volatile IOException failure = null;
+
+    /**
+     * @param file     the file where to append the log. Created if it does not exist.
+     * @param capacity how many commands may wait to be written. Rounded up to a power of two.
+     */
+    public AuditLog(File file, int capacity, OverflowPolicy overflowPolicy) throws IOException {
+        this(new FileOutputStream(file, true).getChannel(), file.getName(), capacity, overflowPolicy);
+    }
+
+    AuditLog(FileChannel channel, String name, int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new Slot[size];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(i - slots.length);
+        }
+        mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.channel = channel;
+        writer = new Thread(new Writer(), "AuditLog-" + name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void commandExecuted(String command, Throwable failure, long durationNanos) {
+        long sequence = claimSequence();
+        if (sequence < 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        Slot slot = slots[(int) sequence & mask];
+        slot.timeMillis = System.currentTimeMillis();
+        slot.durationNanos = durationNanos;
+        slot.command = command;
+        slot.failure = (failure != null) ? failure.getClass() : null;
+        slot.published = sequence;
+    }
+
+    private long claimSequence() {
+        while (true) {
+            if (closed) {
+                return -1;
+            }
+            long sequence = claimed.get();
+            if ((sequence & CLAIMS_CLOSED) != 0) {
+                return -1;
+            }
+            if (sequence - consumed.get() >= slots.length) {
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    return -1;
+                }
+                Thread.yield();
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * How many commands have been dropped, because the buffer was full,
+     * the log was closed or writing the file failed.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * How many commands have been written to the file.
+     */
+    public long written() {
+        return written.get();
+    }
+
+    /**
+     * The exception which stopped writing the file, or null if writing has not failed. After a failure
+     * the log is closed, so the commands are dropped instead of waiting for free space forever.
+     */
+    public IOException failure() {
+        return failure;
+    }
+
+    /**
+     * Writes the remaining commands to the file and closes it.
+     * Commands which are executed after this are dropped.
+     *
+     * @throws IOException if writing the file failed.
+     */
+    public void close() throws IOException, InterruptedException {
+        closed = true;
+        LockSupport.unpark(writer);
+        writer.join();
+        IOException failure = this.failure;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static class Slot {
+        volatile long published;
+        long timeMillis;
+        long durationNanos;
+        String command;
+        Class<?> failure;
+
+        public Slot(long published) {
+            this.published = published;
+        }
+    }
+
+    private class Writer implements Runnable {
+
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final StringBuilder line = new StringBuilder();
+
+        public void run() {
+            try {
+                while (!closed) {
+                    if (drain() == 0) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                }
+                // the callers which claimed a slot before the log was closed are still publishing it
+                while (true) {
+                    long sequence = claimed.get();
+                    if (sequence == consumed.get()) {
+                        if (claimed.compareAndSet(sequence, sequence | CLAIMS_CLOSED)) {
+                            break;
+                        }
+                    } else if (drain() == 0) {
+                        Thread.yield();
+                    }
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+                closed = true;
+                long sequence;
+                do {
+                    sequence = claimed.get();
+                } while ((sequence & CLAIMS_CLOSED) == 0 && !claimed.compareAndSet(sequence, sequence | CLAIMS_CLOSED));
+                // every claimed slot which was not written, including the ones still being published
+                dropped.addAndGet((sequence & ~CLAIMS_CLOSED) - written.get());
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private int drain() throws IOException {
+            long sequence = consumed.get();
+            int count = 0;
+            while (true) {
+                Slot slot = slots[(int) sequence & mask];
+                if (slot.published != sequence) {
+                    break;
+                }
+                format(slot);
+                slot.command = null;
+                sequence++;
+                count++;
+                consumed.lazySet(sequence);
+            }
+            if (count > 0) {
+                flush();
+                written.addAndGet(count);
+            }
+            return count;
+        }
+
+        private void format(Slot slot) throws IOException {
+            line.setLength(0);
+            line.append(slot.timeMillis).append('\t');
+            line.append(TimeUnit.NANOSECONDS.toMicros(slot.durationNanos)).append('\t');
+            line.append(slot.failure == null ? "OK" : slot.failure.getName()).append('\t');
+            String command = slot.command;
+            for (int i = 0; i < command.length(); i++) {
+                char c = command.charAt(i);
+                line.append(Character.isISOControl(c) ? ' ' : c);
+            }
+            line.append('\n');
+            CharBuffer chars = CharBuffer.wrap(line);
+            while (encoder.encode(chars, bytes, true).isOverflow()) {
+                flush();
+            }
+            encoder.reset();
+        }
+
+        private void flush() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary protocol of {@link CommandServer}, for machine clients. All integers are
+ * big-endian and all strings are an <tt>int</tt> length followed by that many bytes of
+ * UTF-8, or the length -1 for null.
+ * <ol>
+ * <li>The client sends the byte {@link #HANDSHAKE}. A text client never sends it.</li>
+ * <li>The server sends the method table: an <tt>int</tt> count and that many strings
+ * as described by {@link MethodTable#describe(int)}.</li>
+ * <li>For each request, the client sends an <tt>int</tt> method id (the index in the method
+ * table), an <tt>int</tt> argument count and that many strings.</li>
+ * <li>The server answers each request with the byte {@link #OK} and the result converted to
+ * a string, or the byte {@link #ERROR} and the error message.</li>
+ * </ol>
+ * A request which is larger than the {@link CommandServer#setMaxRequestSize limit} of the server
+ * is answered with an error, after which the server disconnects the client.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class BinaryProtocol {
+
+    public static final int HANDSHAKE = 0;
+    public static final int OK = 0;
+    public static final int ERROR = 1;
+
+    private static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+
+    private BinaryProtocol() {
+    }
+
+    public static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        return readString(in, in.readInt());
+    }
+
+    private static String readString(DataInputStream in, int length) throws IOException {
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    public static void writeMethodTable(DataOutputStream out, MethodTable table) throws IOException {
+        out.writeInt(table.size());
+        for (int i = 0; i < table.size(); i++) {
+            writeString(out, table.describe(i));
+        }
+    }
+
+    public static String[] readMethodTable(DataInputStream in) throws IOException {
+        String[] methods = new String[in.readInt()];
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = readString(in);
+        }
+        return methods;
+    }
+
+    public static void writeRequest(DataOutputStream out, int methodId, String... args) throws IOException {
+        out.writeInt(methodId);
+        out.writeInt(args.length);
+        for (String arg : args) {
+            writeString(out, arg);
+        }
+    }
+
+    /**
+     * Reads the arguments of a request, after its method id.
+     *
+     * @param maxRequestSize the limit for all the bytes of the request, including the method id.
+     * @throws ProtocolException if the request is larger than the limit. The rest of the request is not read.
+     */
+    static String[] readArguments(DataInputStream in, int maxRequestSize) throws IOException {
+        int argCount = in.readInt();
+        if (argCount < 0) {
+            throw new IOException("invalid argument count: " + argCount);
+        }
+        // the method id, the argument count and the lengths of the arguments
+        long remaining = maxRequestSize - 8L - 4L * argCount;
+        checkRequestSize(remaining, maxRequestSize);
+        // grows as the arguments arrive, so that a bogus count cannot allocate a huge array
+        List<String> args = new ArrayList<String>(Math.min(argCount, 16));
+        for (int i = 0; i < argCount; i++) {
+            int length = in.readInt();
+            if (length > 0) {
+                remaining -= length;
+                checkRequestSize(remaining, maxRequestSize);
+            }
+            args.add(readString(in, length));
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
+    private static void checkRequestSize(long remaining, int maxRequestSize) throws ProtocolException {
+        if (remaining < 0) {
+            throw new ProtocolException("request is larger than " + maxRequestSize + " bytes");
+        }
+    }
+
+    static void writeResponse(DataOutputStream out, boolean ok, String text) throws IOException {
+        out.writeByte(ok ? OK : ERROR);
+        writeString(out, text);
+    }
+
+    /**
+     * @return the result of the request as a string.
+     * @throws IOException with the error message if the request failed.
+     */
+    public static String readResponse(DataInputStream in) throws IOException {
+        int status = in.readUnsignedByte();
+        String text = readString(in);
+        if (status != OK) {
+            throw new IOException(text);
+        }
+        return text;
+    }
+}
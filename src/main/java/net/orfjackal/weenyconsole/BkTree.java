@@ -0,0 +1,125 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.util.*;
+
+/**
+ * A Burkhard-Keller tree of words, for finding the words which are within
+ * a given edit distance from a query without comparing the query to every word.
+ * Not thread-safe while words are being added.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+class BkTree {
+
+    private Node root;
+
+    public void add(String word) {
+        if (root == null) {
+            root = new Node(word);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = editDistance(word, node.word);
+            if (distance == 0) {
+                return;
+            }
+            Node child = node.children.get(distance);
+            if (child == null) {
+                node.children.put(distance, new Node(word));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Returns the words whose edit distance to the query is at most <tt>maxDistance</tt>,
+     * mapped to their distances.
+     */
+    public Map<String, Integer> search(String query, int maxDistance) {
+        Map<String, Integer> results = new HashMap<String, Integer>();
+        if (root == null) {
+            return results;
+        }
+        LinkedList<Node> pending = new LinkedList<Node>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.removeFirst();
+            int distance = editDistance(query, node.word);
+            if (distance <= maxDistance) {
+                results.put(node.word, distance);
+            }
+            // by the triangle inequality, only these subtrees can contain matches
+            for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - distance) <= maxDistance) {
+                    pending.add(child.getValue());
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Levenshtein distance: the number of inserted, deleted or substituted characters.
+     */
+    static int editDistance(String s1, String s2) {
+        int[] previous = new int[s2.length() + 1];
+        int[] current = new int[s2.length() + 1];
+        for (int j = 0; j <= s2.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= s1.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= s2.length(); j++) {
+                int substitution = previous[j - 1] + (s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j] + 1, current[j - 1] + 1));
+            }
+            int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return previous[s2.length()];
+    }
+
+    private static class Node {
+
+        public final String word;
+        public final Map<Integer, Node> children = new HashMap<Integer, Node>();
+
+        public Node(String word) {
+            this.word = word;
+        }
+    }
+}
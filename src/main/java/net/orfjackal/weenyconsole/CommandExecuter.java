@@ -33,15 +33,19 @@ package net.orfjackal.weenyconsole;
 
 import net.orfjackal.weenyconsole.converters.*;
 import net.orfjackal.weenyconsole.exceptions.AmbiguousMethodsException;
+import net.orfjackal.weenyconsole.exceptions.ConcurrencyLimitExceededException;
 import net.orfjackal.weenyconsole.exceptions.CommandExecutionException;
 import net.orfjackal.weenyconsole.exceptions.CommandNotFoundException;
 import net.orfjackal.weenyconsole.exceptions.CommandTargetException;
+import net.orfjackal.weenyconsole.exceptions.CommandTimeoutException;
+import net.orfjackal.weenyconsole.exceptions.MalformedCommandException;
+import net.orfjackal.weenyconsole.exceptions.RateLimitExceededException;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Esko Luontola
@@ -49,121 +53,828 @@ import java.util.List;
  */
 public class CommandExecuter {
 
-    private final CommandService target;
-    private final ConverterProvider provider = initProvider();
-
-    private static ConverterProvider initProvider() {
-        Converter[] converters = new Converter[]{
-                // default
-                new StringConstructorConverter(),
-                // primitive types
-                new DelegatingConverter(Boolean.TYPE, Boolean.class),
-                new DelegatingConverter(Character.TYPE, Character.class),
-                new DelegatingConverter(Byte.TYPE, Byte.class),
-                new DelegatingConverter(Short.TYPE, Short.class),
-                new DelegatingConverter(Integer.TYPE, Integer.class),
-                new DelegatingConverter(Long.TYPE, Long.class),
-                new DelegatingConverter(Float.TYPE, Float.class),
-                new DelegatingConverter(Double.TYPE, Double.class),
-                // special handling for basic types
-                new BooleanConverter(),
-                new CharacterConverter(),
-                new EnumConverter(),
-        };
-        ConverterProvider provider = new ConverterProvider();
-        for (Converter converter : converters) {
-            provider.addConverter(converter);
+    private volatile CommandIndex index = new CommandIndex();
+    private volatile ConverterProvider provider = DefaultConverters.PROVIDER;
+    private final List<Converter> customConverters = new ArrayList<Converter>();
+    private int valueCacheSize = 0;
+    private volatile ResultCache resultCache = new ResultCache(ResultCache.DEFAULT_MAX_SIZE);
+    private final ConcurrentLruMap<String, ParsedCommand> parsedCommands =
+            new ConcurrentLruMap<String, ParsedCommand>(PARSED_COMMANDS_MAX_SIZE) {
+                protected boolean isStale(ParsedCommand value, long now) {
+                    return value.generation != parsedCommandsGeneration;
+                }
+            };
+    // incremented after every change of the targets or converters
+    private volatile int parsedCommandsGeneration = 0;
+    private volatile Set<Class<?>> uncacheableConverterTypes = Collections.emptySet();
+
+    private final ConcurrentMap<String, TokenBucket> rateLimits = new ConcurrentHashMap<String, TokenBucket>();
+    private volatile ExecutorService executorService = null;
+    private volatile CommandAuditor auditor = null;
+    private volatile ExecutionStatistics statistics = null;
+    private int parallelConversionThreshold = 0;
+    private volatile ParallelConversion parallelConversion = null;
+    private final ConcurrentMap<String, Bulkhead> concurrencyGroups = new ConcurrentHashMap<String, Bulkhead>();
+    private final ConcurrentMap<String, String> groupsByMethodName = new ConcurrentHashMap<String, String>();
+
+    private static final int PARSED_COMMANDS_MAX_SIZE = 1000;
+    private static final int PARSED_COMMANDS_MAX_VARARGS = 16;
+
+    /**
+     * The default converters are shared by all executers, so they must not depend on their provider.
+     * Primitive types need no converters of their own, because the provider converts them like
+     * their wrapper types.
+     */
+    private static class DefaultConverters {
+
+        public static final ConverterProvider PROVIDER = initProvider();
+
+        private static ConverterProvider initProvider() {
+            Converter[] converters = new Converter[]{
+                    // default
+                    new StringConstructorConverter(),
+                    // special handling for basic types
+                    new BooleanConverter(),
+                    new CharacterConverter(),
+                    new EnumConverter(),
+                    // reflection free conversions for common JDK types
+                    new NumberConverter(),
+                    new UuidConverter(),
+                    new InetAddressConverter(),
+            };
+            ConverterProvider provider = new ConverterProvider();
+            for (Converter converter : converters) {
+                provider.addConverter(converter);
+            }
+            provider.makeUnmodifiable();
+            return provider;
         }
-        return provider;
     }
 
+    public CommandExecuter() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the target has overloaded methods with the same parameter types
+     */
     public CommandExecuter(CommandService target) {
-        this.target = target;
+        addTarget(target);
+    }
+
+    /**
+     * Makes the methods of the target available as commands, in addition to the existing targets.
+     *
+     * @throws IllegalArgumentException if the target has methods with the same name and parameter
+     *                                  types as the methods of the existing targets
+     */
+    public void addTarget(CommandService target) {
+        addTarget(null, target);
     }
 
-    public void addConverter(Converter converter) {
-        provider.addConverter(converter);
+    /**
+     * Makes the methods of the target available as commands, whose first word is the namespace.
+     * For example with the namespace <tt>"db"</tt>, the method <tt>status()</tt> is executed
+     * with the command <tt>"db status"</tt>.
+     *
+     * @throws IllegalArgumentException if the namespace is not a valid Java identifier, or the target
+     *                                  has methods with the same name and parameter types as the
+     *                                  methods of the existing targets
+     */
+    public synchronized void addTarget(String namespace, CommandService target) {
+        index = index.withTarget(namespace, target);
+        forgetParsedCommands();
+    }
+
+    /**
+     * The converter takes priority over the default converter for the same target type.
+     */
+    public synchronized void addConverter(Converter converter) {
+        customConverters.add(converter);
+        rebuildProvider();
+    }
+
+    /**
+     * Enables reusing converted parameter values.
+     *
+     * @see ConverterProvider#setValueCacheSize(int)
+     */
+    public synchronized void setValueCacheSize(int maxSizePerType) {
+        if (maxSizePerType < 0) {
+            throw new IllegalArgumentException("maxSizePerType must not be negative: " + maxSizePerType);
+        }
+        valueCacheSize = maxSizePerType;
+        rebuildProvider();
+    }
+
+    private void rebuildProvider() {
+        // copy-on-write, so that commands which are being executed can keep on using the old provider
+        Set<Class<?>> uncacheable = new HashSet<Class<?>>();
+        for (Converter converter : customConverters) {
+            if (!(converter instanceof CacheableConverter)) {
+                uncacheable.add(converter.supportedTargetType());
+            }
+        }
+        uncacheableConverterTypes = uncacheable;
+        if (customConverters.isEmpty() && valueCacheSize == 0) {
+            provider = DefaultConverters.PROVIDER;
+        } else {
+            ConverterProvider copy = new ConverterProvider(DefaultConverters.PROVIDER);
+            for (Converter converter : customConverters) {
+                copy.addConverter(converter);
+            }
+            copy.setValueCacheSize(valueCacheSize);
+            provider = copy;
+        }
+        forgetParsedCommands();
+    }
+
+    /**
+     * Limits how often the methods with the given name (including the namespace,
+     * as in <tt>"dbStatus"</tt>) may be executed. Overrides {@link RateLimited}.
+     */
+    public void setRateLimit(String methodName, double permitsPerSecond, int burst) {
+        rateLimits.put(methodName, new TokenBucket(permitsPerSecond, burst));
+    }
+
+    /**
+     * Returns the rate limit of the methods with the given name, or null if they are not limited.
+     */
+    public TokenBucket getRateLimit(String methodName) {
+        TokenBucket limit = rateLimits.get(methodName);
+        if (limit == null) {
+            limit = rateLimitFromAnnotations(methodName, index.overloadsOf(methodName));
+        }
+        return limit;
+    }
+
+    /**
+     * The overloads are in the order of specificity, so the most specific annotated overload decides.
+     */
+    private TokenBucket rateLimitFromAnnotations(String methodName, CommandIndex.Overload[] overloads) {
+        for (CommandIndex.Overload overload : overloads) {
+            if (overload.rateLimit != null) {
+                rateLimits.putIfAbsent(methodName,
+                        new TokenBucket(overload.rateLimit.permitsPerSecond(), overload.rateLimit.burst()));
+                return rateLimits.get(methodName);
+            }
+        }
+        return null;
+    }
+
+    private void checkRateLimit(String methodName, CommandIndex.Overload[] overloads, CommandText command) {
+        TokenBucket limit = rateLimitOf(methodName, overloads);
+        if (limit != null && !limit.tryAcquire()) {
+            throw new RateLimitExceededException(command.toString());
+        }
+    }
+
+    /**
+     * Rejects the command before converting its parameters for a method whose limit is used
+     * up, but does not take a token, because the command might not match the method.
+     */
+    private void checkRateLimitBeforeConverting(String methodName, CommandIndex.Overload[] overloads, CommandText command) {
+        TokenBucket limit = rateLimitOf(methodName, overloads);
+        if (limit != null && !limit.hasToken()) {
+            throw new RateLimitExceededException(command.toString());
+        }
+    }
+
+    private TokenBucket rateLimitOf(String methodName, CommandIndex.Overload[] overloads) {
+        TokenBucket limit = rateLimits.get(methodName);
+        if (limit == null) {
+            limit = rateLimitFromAnnotations(methodName, overloads);
+        }
+        return limit;
+    }
+
+    /**
+     * Limits how many commands of the {@link ConcurrencyGroup} may be executed at the same time
+     * (<tt>maxConcurrent</tt>) and how many may wait for their turn (<tt>maxQueued</tt>).
+     * Commands over the limits are rejected with {@link ConcurrencyLimitExceededException}.
+     */
+    public void defineConcurrencyGroup(String group, int maxConcurrent, int maxQueued) {
+        concurrencyGroups.put(group, new Bulkhead(group, maxConcurrent, maxQueued));
+    }
+
+    /**
+     * Returns the limits and statistics of the concurrency group, or null if it has not been defined.
+     */
+    public Bulkhead getConcurrencyGroup(String group) {
+        return concurrencyGroups.get(group);
+    }
+
+    /**
+     * Assigns the methods with the given name (including the namespace) to the
+     * concurrency group. Overrides {@link ConcurrencyGroup}.
+     */
+    public void setConcurrencyGroup(String methodName, String group) {
+        groupsByMethodName.put(methodName, group);
+    }
+
+    private void forgetParsedCommands() {
+        parsedCommandsGeneration++; // the writers are synchronized
+        parsedCommands.clear();
+    }
+
+    /**
+     * The cached results of the target's {@link Cacheable} methods.
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Replaces the result cache with an empty cache of the given size.
+     */
+    public void setResultCacheSize(int maxSize) {
+        resultCache = new ResultCache(maxSize);
+    }
+
+    /**
+     * Vararg parameters with at least <tt>threshold</tt> values are converted in parallel,
+     * using the threads of the {@link #setExecutorService executor service}. When many values
+     * can not be converted, the failure of the first one is reported, the same as when
+     * converting them in order. Zero disables the parallel conversion, which is the default.
+     * <p/>
+     * <b>Note:</b> The converters which have been {@link #addConverter added} are then called
+     * concurrently from the threads of the executor service, also during a single command,
+     * so they must be thread-safe. The default converters are.
+     */
+    public synchronized void setParallelConversionThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative: " + threshold);
+        }
+        parallelConversionThreshold = threshold;
+        rebuildParallelConversion();
+    }
+
+    private void rebuildParallelConversion() {
+        parallelConversion = (parallelConversionThreshold > 0)
+                ? new ParallelConversion(executorService(), parallelConversionThreshold, Runtime.getRuntime().availableProcessors())
+                : null;
+    }
+
+    /**
+     * Starts or stops collecting {@link ExecutionStatistics}. They are not collected by default,
+     * because they take some memory for every method which is executed. Starting again after
+     * stopping begins new statistics.
+     */
+    public synchronized void setStatisticsEnabled(boolean enabled) {
+        if (!enabled) {
+            statistics = null;
+        } else if (statistics == null) {
+            statistics = new ExecutionStatistics();
+        }
+    }
+
+    /**
+     * Returns the live statistics of the executed commands, or null if they are not collected.
+     * See {@link StatsCommands} for showing them in the console.
+     */
+    public ExecutionStatistics getStatistics() {
+        return statistics;
+    }
+
+    ConverterProvider converterProvider() {
+        return provider;
+    }
+
+    /**
+     * Every command which is executed after this is reported to the auditor. Null disables auditing.
+     */
+    public void setAuditor(CommandAuditor auditor) {
+        this.auditor = auditor;
     }
 
     /**
      * @throws CommandExecutionException
      */
     public Object execute(String command) {
+        return execute(new CommandText(command), parsingMatchSource);
+    }
+
+    /**
+     * Executes a command which has already been split into words, without parsing it, so that
+     * the words do not need to be quoted or escaped. A null word is passed to the method as null.
+     * With only one word, use an array to call this instead of {@link #execute(String)}.
+     *
+     * @throws CommandExecutionException
+     */
+    public Object execute(final String... words) {
+        return execute(new CommandText(null, words), new MatchSource() {
+            public Match matchFor(CommandText command) {
+                return (words.length == 0) ? null : CommandExecuter.this.matchFor(command, words);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #execute(String[])} for words which are not strings.
+     *
+     * @throws CommandExecutionException
+     */
+    public Object execute(CharSequence... words) {
+        String[] strings = new String[words.length];
+        for (int i = 0; i < words.length; i++) {
+            strings[i] = (words[i] != null) ? words[i].toString() : null;
+        }
+        return execute(strings);
+    }
+
+    /**
+     * Returns a numbered table of the methods which can currently be executed. Executing
+     * a method through the table skips parsing the command and resolving the method.
+     */
+    public MethodTable methodTable() {
+        return new MethodTable(this, index);
+    }
+
+    Object execute(final String methodName, final CommandIndex.Overload overload, final String[] args) {
+        return execute(new CommandText(methodName, args), new MatchSource() {
+            public Match matchFor(CommandText command) {
+                checkRateLimit(methodName, index.overloadsOf(methodName), command);
+                Object[] parameters = newMethodCall(methodName, args, 0).parametersFor(overload.method);
+                if (parameters == null) {
+                    throw new CommandNotFoundException(command.toString());
+                }
+                return new Match(methodName, overload, parameters);
+            }
+        });
+    }
+
+    private Object execute(CommandText command, MatchSource source) {
+        long start = System.nanoTime();
+        try {
+            Object result = executeUnaudited(command, source);
+            commandExecuted(command, null, start);
+            return result;
+        } catch (CommandExecutionException e) {
+            commandExecuted(command, e, start);
+            throw e;
+        }
+    }
+
+    private void commandExecuted(CommandText command, CommandExecutionException failure, long startNanos) {
+        ExecutionStatistics statistics = this.statistics;
+        if (statistics != null) {
+            statistics.commandExecuted(failure);
+        }
+        CommandAuditor auditor = this.auditor;
+        if (auditor != null) {
+            auditor.commandExecuted(command.toString(), failure, System.nanoTime() - startNanos);
+        }
+    }
+
+    private Object executeUnaudited(CommandText command, MatchSource source) {
         try {
-            if (command.trim().length() == 0) {
+            Match match = source.matchFor(command);
+            if (match == null) {
                 return null;
             }
-            return matchFor(command).invoke(target);
+            return invoke(match, command);
 
         } catch (CommandExecutionException e) {
             throw e;
         } catch (InvocationTargetException e) {
-            throw new CommandTargetException(command, e.getTargetException(), e);
+            throw new CommandTargetException(command.toString(), e.getTargetException(), e);
         } catch (IllegalAccessException e) {
             e.printStackTrace(); // should never happen - caused by restricted Java VM or a bug
-            throw new CommandExecutionException(command, e);
+            throw new CommandExecutionException(command.toString(), e);
         } catch (RuntimeException e) {
             e.printStackTrace(); // should never happen - caused by a bug in this program
+            throw new CommandExecutionException(command.toString(), e);
+        }
+    }
+
+    /**
+     * Returns the words which can complete the last word of the partial command, in alphabetical
+     * order. If the partial command ends with whitespace, the completed word is the one after it.
+     * The words of the command names are completed, and so are the values of enum parameters.
+     */
+    public List<String> complete(String partialCommand) {
+        String[] words;
+        try {
+            words = (partialCommand.trim().length() == 0) ? new String[0] : CommandUtil.wordsFrom(partialCommand);
+        } catch (MalformedCommandException e) {
+            return new ArrayList<String>();
+        }
+        boolean atNewWord = words.length == 0 || endsWithUnescapedWhitespace(partialCommand);
+        String[] previousWords = atNewWord ? words : Arrays.copyOfRange(words, 0, words.length - 1);
+        String lastWord = atNewWord ? "" : words[words.length - 1];
+        if (lastWord == null) {
+            return new ArrayList<String>();
+        }
+        CommandIndex index = this.index;
+        SortedSet<String> completions = new TreeSet<String>();
+        completeCommandNames(index, previousWords, lastWord, completions);
+        completeEnumParameters(index, previousWords, lastWord, completions);
+        return new ArrayList<String>(completions);
+    }
+
+    /**
+     * Tells whether every method which the command could execute is annotated {@link ThreadSafe}.
+     */
+    boolean isThreadSafe(String command) {
+        String[] words;
+        try {
+            words = CommandUtil.wordsFrom(command);
+        } catch (MalformedCommandException e) {
+            return false;
+        }
+        CommandIndex index = this.index;
+        String[] methodNames = CommandUtil.methodNamesFrom(words, index.longestMethodName());
+        boolean found = false;
+        for (String methodName : methodNames) {
+            if (methodName == null) {
+                continue;
+            }
+            for (CommandIndex.Overload overload : index.overloadsOf(methodName)) {
+                if (!overload.threadSafe) {
+                    return false;
+                }
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private static boolean endsWithUnescapedWhitespace(String s) {
+        int last = s.length() - 1;
+        return Character.isWhitespace(s.charAt(last))
+                && (last == 0 || s.charAt(last - 1) != '\\');
+    }
+
+    private static void completeCommandNames(CommandIndex index, String[] previousWords, String lastWord,
+                                             Set<String> completions) {
+        StringBuilder prefix = new StringBuilder();
+        for (String word : previousWords) {
+            if (word == null) {
+                return;
+            }
+            prefix.append(word).append(' ');
+        }
+        prefix.append(lastWord);
+        for (String spelling : index.spellingsStartingWith(prefix.toString())) {
+            completions.add(spelling.split(" ")[previousWords.length]);
+        }
+    }
+
+    private void completeEnumParameters(CommandIndex index, String[] previousWords, String lastWord,
+                                        Set<String> completions) {
+        String[] methodNames = CommandUtil.methodNamesFrom(previousWords, index.longestMethodName());
+        for (int i = previousWords.length; i > 0; i--) {
+            if (methodNames[i - 1] == null) {
+                continue;
+            }
+            for (CommandIndex.Overload overload : index.overloadsOf(methodNames[i - 1])) {
+                Class<?> type = parameterType(overload.method, previousWords.length - i);
+                if (type != null && isConvertedByEnumConverter(type)) {
+                    for (Object constant : type.getEnumConstants()) {
+                        String name = ((Enum<?>) constant).name();
+                        if (name.startsWith(lastWord)) {
+                            completions.add(name);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static Class<?> parameterType(Method method, int parameterIndex) {
+        Class<?>[] types = method.getParameterTypes();
+        if (method.isVarArgs() && parameterIndex >= types.length - 1) {
+            return types[types.length - 1].getComponentType();
+        }
+        return (parameterIndex < types.length) ? types[parameterIndex] : null;
+    }
+
+    private boolean isConvertedByEnumConverter(Class<?> type) {
+        ConverterProvider provider = this.provider;
+        return type.isEnum()
+                && provider.converterFor(type) == null
+                && provider.converterFor(Enum.class) instanceof EnumConverter;
+    }
+
+    /**
+     * Executes the command in a thread of the executor service, so that it can be cancelled.
+     * Cancelling the returned future interrupts the target method.
+     *
+     * @see #setExecutorService(ExecutorService)
+     */
+    public Future<Object> submit(final String command) {
+        return executorService().submit(new Callable<Object>() {
+            public Object call() {
+                return execute(command);
+            }
+        });
+    }
+
+    /**
+     * Executes the command like {@link #execute(String)}, but interrupts the target method
+     * and throws {@link CommandTimeoutException} if it does not return before the timeout.
+     * If the target method ignores the interruption, it keeps on running in the background.
+     *
+     * @throws CommandExecutionException
+     */
+    public Object execute(String command, long timeout, TimeUnit unit) {
+        Future<Object> future = submit(command);
+        try {
+            return future.get(timeout, unit);
+
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new CommandTimeoutException(command, timeout, unit);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CommandExecutionException(command, e);
+        } catch (CancellationException e) {
             throw new CommandExecutionException(command, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CommandExecutionException) {
+                throw (CommandExecutionException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CommandExecutionException(command, cause);
         }
     }
 
-    private Match matchFor(String command) {
-        List<Match> matches = allMatchesFor(command);
-        if (matches.size() == 1) {
-            return matches.get(0);
+    /**
+     * The executor service for running {@link #submit} and timed {@link #execute(String, long, TimeUnit)}.
+     * By default an unbounded pool of daemon threads, shared by all executers, is used.
+     */
+    public synchronized void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        rebuildParallelConversion();
+    }
+
+    private ExecutorService executorService() {
+        ExecutorService executorService = this.executorService;
+        return (executorService != null) ? executorService : DefaultExecutorService.INSTANCE;
+    }
+
+    private static class DefaultExecutorService {
+
+        public static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "CommandExecuter-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private Object invoke(Match match, CommandText command) throws IllegalAccessException, InvocationTargetException {
+        ExecutionStatistics statistics = this.statistics;
+        if (statistics == null) {
+            return invokeCached(match, command);
         }
-        if (matches.size() == 0) {
-            throw new CommandNotFoundException(command);
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Object result = invokeCached(match, command);
+            succeeded = true;
+            return result;
+        } finally {
+            statistics.methodInvoked(match.methodName, System.nanoTime() - start, succeeded);
+        }
+    }
+
+    private Object invokeCached(Match match, CommandText command) throws IllegalAccessException, InvocationTargetException {
+        if (!match.overload.isCacheable()) {
+            return invokeTarget(match, command);
         }
-        int lengthOfFirst = matches.get(0).method.getName().length();
-        int lengthOfSecond = matches.get(1).method.getName().length();
-        if (lengthOfFirst > lengthOfSecond) {
-            // higher priority for longer names
-            return matches.get(0);
+        ResultCache cache = resultCache;
+        ResultCache.Key key = ResultCache.keyFor(match.overload.target, match.method, match.parameters);
+        Object[] cached = cache.get(key);
+        if (cached != null) {
+            return cached[0];
         }
-        throw new AmbiguousMethodsException(command, methodsFrom(matches));
+        key = key.copy();
+        Object result = invokeTarget(match, command);
+        cache.put(key, result, match.overload.cacheTimeToLive);
+        return result;
     }
 
-    private List<Match> allMatchesFor(String command) {
-        List<Match> matches = new ArrayList<Match>();
-        for (MethodCall methodCall : possibleMethodCalls(command)) {
-            matches.addAll(matchesWithPossibleMethods(methodCall));
+    private Object invokeTarget(Match match, CommandText command) throws IllegalAccessException, InvocationTargetException {
+        Bulkhead bulkhead = bulkheadFor(match);
+        if (bulkhead == null) {
+            return match.invoke();
         }
-        return matches;
+        try {
+            if (!bulkhead.acquire()) {
+                throw new ConcurrencyLimitExceededException(command.toString(), bulkhead.getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommandExecutionException(command.toString(), e);
+        }
+        try {
+            return match.invoke();
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private Bulkhead bulkheadFor(Match match) {
+        String group = groupsByMethodName.get(match.methodName);
+        if (group == null) {
+            group = match.overload.concurrencyGroup;
+        }
+        return (group != null) ? concurrencyGroups.get(group) : null;
+    }
+
+    /**
+     * Finds the method which a command executes, or returns null if there is nothing to execute.
+     */
+    private interface MatchSource {
+        Match matchFor(CommandText command);
+    }
+
+    private final MatchSource parsingMatchSource = new MatchSource() {
+        public Match matchFor(CommandText command) {
+            String text = command.toString();
+            return (text.trim().length() == 0) ? null : parsedMatchFor(command, text);
+        }
+    };
+
+    /**
+     * The text of a command for the error messages and the auditor. For a command which was
+     * given as words, the text is built only if it is needed, because quoting it is not free.
+     */
+    private static class CommandText {
+        private final String methodName;
+        private final String[] words;
+        private String text;
+
+        public CommandText(String text) {
+            this.methodName = null;
+            this.words = null;
+            this.text = text;
+        }
+
+        public CommandText(String methodName, String[] words) {
+            this.methodName = methodName;
+            this.words = words;
+        }
+
+        public String toString() {
+            if (text == null) {
+                String[] allWords = words;
+                if (methodName != null) {
+                    String[] nameWords = CommandUtil.wordsFromMethodName(methodName);
+                    allWords = Arrays.copyOf(nameWords, nameWords.length + words.length);
+                    System.arraycopy(words, 0, allWords, nameWords.length, words.length);
+                }
+                text = CommandUtil.commandFrom(allWords);
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Repeated commands are not parsed again, if their parameters were converted to immutable
+     * values which can be shared between invocations. Only the vararg arrays are copied.
+     */
+    private Match parsedMatchFor(CommandText command, String text) {
+        // read before the index and the provider, so that a command which was matched
+        // against an old index or provider is never reused after they are changed
+        int generation = parsedCommandsGeneration;
+        ParsedCommand parsed = parsedCommands.get(text);
+        if (parsed != null && parsed.generation == generation) {
+            Match match = parsed.match;
+            checkRateLimit(match.methodName, index.overloadsOf(match.methodName), command);
+            return match.copy();
+        }
+        Match match = matchFor(command, CommandUtil.wordsFrom(text));
+        if (!isReusable(match)) {
+            return match;
+        }
+        parsedCommands.put(text, new ParsedCommand(match, generation));
+        return match.copy();
+    }
+
+    private static class ParsedCommand {
+        final Match match;
+        final int generation;
+
+        public ParsedCommand(Match match, int generation) {
+            this.match = match;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Only the values of the default converters and of {@link CacheableConverter}s are reused,
+     * because the other converters may give a different value every time. Large vararg arrays
+     * are not reused, because copying them would cost about as much as converting them.
+     */
+    private boolean isReusable(Match match) {
+        if (!match.hasImmutableParameters() || match.varargCount() > PARSED_COMMANDS_MAX_VARARGS) {
+            return false;
+        }
+        Set<Class<?>> uncacheable = uncacheableConverterTypes;
+        if (uncacheable.isEmpty()) {
+            return true;
+        }
+        for (Class<?> type : match.method.getParameterTypes()) {
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (type.isPrimitive()) {
+                type = ConverterProvider.wrapperTypeOf(type);
+            }
+            for (Class<?> converterType : uncacheable) {
+                // the provider uses also the converters of subclasses and superclasses
+                if (type == null || converterType.isAssignableFrom(type) || type.isAssignableFrom(converterType)) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
-    private List<MethodCall> possibleMethodCalls(String command) {
-        List<MethodCall> results = new ArrayList<MethodCall>();
-        String[] words = CommandUtil.wordsFrom(command);
+    /**
+     * Tries the possible method names from the longest to the shortest, so that
+     * the search can stop at the first name which has exactly one matching method.
+     * Only when the command is ambiguous, also the shorter names are looked up,
+     * to be able to report all the methods which match the command.
+     */
+    private Match matchFor(CommandText command, String[] words) {
+        CommandIndex index = this.index;
+        String[] methodNames = CommandUtil.methodNamesFrom(words, index.longestMethodName());
         for (int i = words.length; i > 0; i--) {
-            String methodName = CommandUtil.methodNameFrom(words, i);
+            String methodName = methodNames[i - 1];
             if (methodName != null) {
-                results.add(new MethodCall(methodName, words, i, words.length - i, provider));
+                checkRateLimitBeforeConverting(methodName, index.overloadsOf(methodName), command);
+            }
+            List<Match> matches = matchesFor(index, methodName, words, i);
+            if (matches.size() == 1) {
+                // higher priority for longer names
+                Match match = matches.get(0);
+                checkRateLimit(match.methodName, index.overloadsOf(match.methodName), command);
+                return match;
+            }
+            if (matches.size() > 1) {
+                for (int j = i - 1; j > 0; j--) {
+                    matches.addAll(matchesFor(index, methodNames[j - 1], words, j));
+                }
+                throw new AmbiguousMethodsException(command.toString(), methodsFrom(matches));
+            }
+        }
+        throw new CommandNotFoundException(command.toString(), suggestionsFrom(index, words));
+    }
+
+    private static CommandNotFoundException.SuggestionSource suggestionsFrom(final CommandIndex index, final String[] words) {
+        return new CommandNotFoundException.SuggestionSource() {
+            public List<String> suggestionsFor(String command) {
+                return index.suggestionsFor(words);
             }
+        };
+    }
+
+    private List<Match> matchesFor(CommandIndex index, String methodName, String[] words, int wordsInName) {
+        if (methodName == null) {
+            return new ArrayList<Match>();
         }
-        return results;
+        CommandIndex.Overload[] overloads = index.overloadsOf(methodName);
+        if (overloads.length == 0) {
+            return new ArrayList<Match>();
+        }
+        return matchesWithPossibleMethods(newMethodCall(methodName, words, wordsInName), overloads);
     }
 
-    private List<Match> matchesWithPossibleMethods(MethodCall methodCall) {
+    private MethodCall newMethodCall(String methodName, String[] words, int wordsInName) {
+        return new MethodCall(methodName, words, wordsInName, words.length - wordsInName, this.provider, this.parallelConversion);
+    }
+
+    private static List<Match> matchesWithPossibleMethods(MethodCall methodCall, CommandIndex.Overload[] overloads) {
         List<Match> matches = new ArrayList<Match>();
-        for (Method method : possibleMethods()) {
-            if (methodCall.matches(method)) {
-                matches.add(new Match(methodCall, method));
+        for (CommandIndex.Overload overload : overloads) {
+            if (isLessSpecificThanAny(overload, matches)) {
+                // a more specific overload was already found, so there is no need to convert the parameters
+                continue;
+            }
+            Object[] parameters = methodCall.parametersFor(overload.method);
+            if (parameters != null) {
+                matches.add(new Match(methodCall.getMethodName(), overload, parameters));
             }
         }
         return matches;
     }
 
-    private Method[] possibleMethods() {
-        List<Method> results = new ArrayList<Method>();
-        for (Method method : target.getClass().getMethods()) {
-            if (implementsTheMarkerInterface(method)
-                    && isPublicInstanceMethod(method)) {
-                results.add(method);
+    private static boolean isLessSpecificThanAny(CommandIndex.Overload overload, List<Match> matches) {
+        for (Match match : matches) {
+            if (match.overload.isMoreSpecificThan(overload)) {
+                return true;
             }
         }
-        return results.toArray(new Method[results.size()]);
+        return false;
     }
 
     private static List<Method> methodsFrom(List<Match> matches) {
@@ -177,25 +888,52 @@ public class CommandExecuter {
     // TODO: the name "Match" does not describe this class well enough - refactor for better readability 
     private static class Match {
 
-        public final MethodCall methodCall;
+        public final String methodName;
+        public final CommandIndex.Overload overload;
         public final Method method;
+        public final Object[] parameters;
 
-        public Match(MethodCall methodCall, Method method) {
-            this.methodCall = methodCall;
-            this.method = method;
+        public Match(String methodName, CommandIndex.Overload overload, Object[] parameters) {
+            this.methodName = methodName;
+            this.overload = overload;
+            this.method = overload.method;
+            this.parameters = parameters;
         }
 
-        public Object invoke(CommandService target) throws IllegalAccessException, InvocationTargetException {
-            return methodCall.invoke(method, target);
+        public Object invoke() throws IllegalAccessException, InvocationTargetException {
+            return method.invoke(overload.target, parameters);
         }
-    }
 
-    private static boolean implementsTheMarkerInterface(Method method) {
-        return CommandService.class.isAssignableFrom(method.getDeclaringClass());
-    }
+        public boolean hasImmutableParameters() {
+            for (Object parameter : parameters) {
+                if (!ImmutableValues.isImmutable(parameter)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public int varargCount() {
+            int count = 0;
+            for (Object parameter : parameters) {
+                if (parameter instanceof Object[]) {
+                    count += ((Object[]) parameter).length;
+                }
+            }
+            return count;
+        }
 
-    private static boolean isPublicInstanceMethod(Method method) {
-        return Modifier.isPublic(method.getModifiers())
-                && !Modifier.isStatic(method.getModifiers());
+        public Match copy() {
+            Object[] copy = null;
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i] instanceof Object[]) {
+                    if (copy == null) {
+                        copy = parameters.clone();
+                    }
+                    copy[i] = ((Object[]) parameters[i]).clone();
+                }
+            }
+            return (copy != null) ? new Match(methodName, overload, copy) : this;
+        }
     }
 }
@@ -0,0 +1,688 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A history of commands which survives restarts. The commands are appended to memory-mapped
+ * segment files in a directory, so that only the offsets of the commands are kept on the heap.
+ * When there are too many full segments, they are compacted in the background into one segment,
+ * from which the older occurrences of repeated commands have been removed. The oldest segments
+ * which are larger than all the newer full segments together are left out of the background
+ * compaction, so that the already compacted history is not rewritten every time.
+ * <p/>
+ * A compacted segment is named after the range of segments which it replaces, and it supersedes
+ * them as soon as it has been renamed from a temporary file, so the history is not duplicated
+ * if the replaced files could not be deleted before a crash. Only the temporary file is renamed,
+ * never a mapped file, because the mapped files cannot be renamed or deleted on Windows. The files
+ * which could not be deleted are deleted later, or when the history is opened again.
+ * <p/>
+ * The commands are numbered from the oldest (0) to the newest ({@link #size()} - 1).
+ * Compaction renumbers the commands which are older than the current segment.
+ * <p/>
+ * Reading the history never blocks adding commands to it, so it can be used as the
+ * {@link CommandAuditor} of a {@link CommandExecuter} to record the commands which succeeded.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class CommandHistory implements CommandAuditor {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MAX_FULL_SEGMENTS = 8;
+
+    private static final String SUFFIX = ".history";
+    private static final String TEMP_SUFFIX = SUFFIX + ".tmp";
+    private static final int LENGTH_SIZE = 4;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    // 12 bytes per slot, so removing the repeats takes at most 12 MB; beyond that the repeats are kept
+    private static final int MAX_DEDUPE_SLOTS = 1 << 20;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxFullSegments;
+    // copy-on-write, so that the readers need no locks
+    private volatile Segment[] segments = new Segment[0];
+    private final Object writeLock = new Object();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "CommandHistory-compactor");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private int nextSegmentNumber = 0;
+    // superseded by a compacted segment, but could not be deleted yet; used only by the compactor
+    private final List<File> obsolete = new ArrayList<File>();
+
+    public CommandHistory(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_FULL_SEGMENTS);
+    }
+
+    public CommandHistory(File directory, int segmentSize, int maxFullSegments) throws IOException {
+        if (segmentSize <= LENGTH_SIZE) {
+            throw new IllegalArgumentException("segmentSize is too small: " + segmentSize);
+        }
+        if (maxFullSegments < 1) {
+            throw new IllegalArgumentException("maxFullSegments must be at least 1: " + maxFullSegments);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxFullSegments = maxFullSegments;
+        List<Segment> opened = new ArrayList<Segment>();
+        int lastNumber = -1;
+        for (File file : segmentFiles(directory)) {
+            if (rangeOf(file)[1] <= lastNumber) {
+                obsolete.add(file); // already compacted into the previous segment
+                continue;
+            }
+            opened.add(Segment.open(file, file.length()));
+            lastNumber = rangeOf(file)[1];
+        }
+        nextSegmentNumber = lastNumber + 1;
+        segments = opened.toArray(new Segment[opened.size()]);
+        deleteObsolete();
+    }
+
+    /**
+     * Returns the segment files ordered by their first segment number, so that a compacted
+     * segment comes before the segments which it replaced. Other files are skipped.
+     */
+    private static List<File> segmentFiles(File directory) {
+        List<File> files = new ArrayList<File>();
+        File[] all = directory.listFiles();
+        for (File file : (all != null) ? all : new File[0]) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                file.delete(); // left over from an interrupted compaction; never read, so it may also stay
+            } else if (rangeOf(file) != null && file.length() > 0) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                int[] r1 = rangeOf(f1);
+                int[] r2 = rangeOf(f2);
+                return (r1[0] != r2[0]) ? r1[0] - r2[0] : r2[1] - r1[1];
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Returns the first and last segment number of a segment file, which is named
+     * <tt>first.history</tt> or, if it is compacted, <tt>first-last.history</tt>.
+     * Returns null if the file is not a segment file.
+     */
+    private static int[] rangeOf(File file) {
+        String name = file.getName();
+        if (!name.endsWith(SUFFIX)) {
+            return null;
+        }
+        String[] numbers = name.substring(0, name.length() - SUFFIX.length()).split("-", -1);
+        if (numbers.length > 2) {
+            return null;
+        }
+        try {
+            int first = Integer.parseInt(numbers[0]);
+            int last = (numbers.length == 2) ? Integer.parseInt(numbers[1]) : first;
+            return (first >= 0 && last >= first) ? new int[]{first, last} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private File segmentFile(int number) {
+        return new File(directory, String.format("%010d", number) + SUFFIX);
+    }
+
+    private File segmentFile(int first, int last) {
+        return new File(directory, String.format("%010d-%010d", first, last) + SUFFIX);
+    }
+
+    public void commandExecuted(String command, Throwable failure, long durationNanos) {
+        if (failure == null) {
+            try {
+                add(command);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Appends the command to the end of the history.
+     */
+    public void add(String command) throws IOException {
+        byte[] bytes = utf8(command);
+        if (bytes.length + LENGTH_SIZE > segmentSize) {
+            throw new IllegalArgumentException("command is longer than the segment size: " + command);
+        }
+        synchronized (writeLock) {
+            Segment[] segments = this.segments;
+            Segment active = (segments.length == 0) ? null : segments[segments.length - 1];
+            if (active == null || !active.append(bytes)) {
+                active = Segment.open(segmentFile(nextSegmentNumber++), segmentSize);
+                active.append(bytes);
+                segments = Arrays.copyOf(segments, segments.length + 1);
+                segments[segments.length - 1] = active;
+                this.segments = segments;
+            }
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Starts a background compaction, unless one is already running. The commands which are
+     * added during a compaction start the next one after it, if there are too many full segments.
+     */
+    private void compactIfNeeded() {
+        if (segments.length - 1 <= maxFullSegments
+                || compactor.isShutdown()
+                || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compactor.execute(new Runnable() {
+                public void run() {
+                    boolean compacted = false;
+                    try {
+                        compact(false);
+                        compacted = true;
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    } finally {
+                        compacting.set(false);
+                    }
+                    if (compacted) {
+                        compactIfNeeded();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compacting.set(false); // closed after the check
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if there is no such command.
+     */
+    public String get(long index) {
+        long first = 0;
+        for (Segment segment : segments) {
+            int count = segment.count;
+            if (index >= first && index < first + count) {
+                return segment.get((int) (index - first));
+            }
+            first += count;
+        }
+        throw new IndexOutOfBoundsException("index " + index + ", size " + first);
+    }
+
+    /**
+     * Returns at most the given number of the newest commands, from the oldest to the newest.
+     */
+    public List<String> tail(int maxResults) {
+        LinkedList<String> results = new LinkedList<String>();
+        Segment[] segments = this.segments;
+        for (int s = segments.length - 1; s >= 0 && results.size() < maxResults; s--) {
+            Segment segment = segments[s];
+            for (int i = segment.count - 1; i >= 0 && results.size() < maxResults; i--) {
+                results.addFirst(segment.get(i));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the index of the newest command which contains the text and is not newer than
+     * <tt>fromIndex</tt>, or -1 if there is none. Use <tt>{@link #size()} - 1</tt> to search
+     * the whole history, and the previous result - 1 to find the next older match.
+     */
+    public long searchBackward(String text, long fromIndex) {
+        byte[] pattern = utf8(text);
+        Segment[] segments = this.segments;
+        int[] counts = new int[segments.length];
+        long last = -1;
+        for (int s = 0; s < segments.length; s++) {
+            counts[s] = segments[s].count;
+            last += counts[s];
+        }
+        for (int s = segments.length - 1; s >= 0; s--) {
+            Segment segment = segments[s];
+            long first = last - counts[s] + 1;
+            for (long index = Math.min(last, fromIndex); index >= first; index--) {
+                if (segment.contains((int) (index - first), pattern)) {
+                    return index;
+                }
+            }
+            last = first - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns at most the given number of distinct commands which start with the prefix,
+     * from the newest to the oldest.
+     */
+    public List<String> startingWith(String prefix, int maxResults) {
+        byte[] pattern = utf8(prefix);
+        Set<String> results = new LinkedHashSet<String>();
+        Segment[] segments = this.segments;
+        for (int s = segments.length - 1; s >= 0 && results.size() < maxResults; s--) {
+            Segment segment = segments[s];
+            for (int i = segment.count - 1; i >= 0 && results.size() < maxResults; i--) {
+                if (segment.startsWith(i, pattern)) {
+                    results.add(segment.get(i));
+                }
+            }
+        }
+        return new ArrayList<String>(results);
+    }
+
+    /**
+     * Merges all the full segments into one, keeping only the newest occurrence of each command.
+     * Waits for a background compaction which is in progress, because they run one at a time.
+     *
+     * @throws RejectedExecutionException if the history has been closed.
+     */
+    public void compact() throws IOException, InterruptedException {
+        Future<?> done = compactor.submit(new Callable<Object>() {
+            public Object call() throws IOException {
+                compact(true);
+                return null;
+            }
+        });
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    /**
+     * Runs only in the compactor thread. The full segments do not change, so they are
+     * read without locking, and the lock is held only for replacing them.
+     */
+    private void compact(boolean all) throws IOException {
+        Segment[] snapshot = segments;
+        int fullCount = snapshot.length - 1;
+        if (fullCount < 2) {
+            return;
+        }
+        int from = fullCount - 2;
+        long newerSize = snapshot[from].end + snapshot[from + 1].end;
+        while (from > 0 && (all || snapshot[from - 1].end <= newerSize || from >= maxFullSegments)) {
+            from--;
+            newerSize += snapshot[from].end;
+        }
+        Segment[] merged = Arrays.copyOfRange(snapshot, from, fullCount);
+
+        File target = segmentFile(rangeOf(merged[0].file)[0], rangeOf(merged[merged.length - 1].file)[1]);
+        File temp = new File(directory, target.getName().replace(SUFFIX, TEMP_SUFFIX));
+        // an existing target is left over from a failed compaction and is not mapped,
+        // because it covers at least two of the current segments
+        if (target.exists() && !target.delete()) {
+            throw new IOException("cannot delete " + target);
+        }
+        writeCommands(temp, merged, newestOccurrences(merged));
+        if (!temp.renameTo(target)) {
+            throw new IOException("cannot rename " + temp + " to " + target);
+        }
+        Segment compacted = Segment.open(target, target.length());
+
+        synchronized (writeLock) {
+            Segment[] current = segments;
+            Segment[] replaced = new Segment[current.length - merged.length + 1];
+            System.arraycopy(current, 0, replaced, 0, from);
+            replaced[from] = compacted;
+            System.arraycopy(current, from + merged.length, replaced, from + 1, current.length - from - merged.length);
+            segments = replaced;
+        }
+        for (Segment segment : merged) {
+            obsolete.add(segment.file);
+        }
+        deleteObsolete();
+    }
+
+    /**
+     * Writes the kept commands to a file which is not mapped, so that it can be renamed.
+     */
+    private static void writeCommands(File file, Segment[] merged, BitSet kept) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            int position = 0;
+            for (Segment segment : merged) {
+                for (int i = 0; i < segment.count; i++, position++) {
+                    if (kept.get(position)) {
+                        ByteBuffer record = segment.record(i);
+                        if (record.remaining() > buffer.remaining()) {
+                            flush(channel, buffer);
+                        }
+                        if (record.remaining() > buffer.remaining()) {
+                            writeFully(channel, record);
+                        } else {
+                            buffer.put(record);
+                        }
+                    }
+                }
+            }
+            flush(channel, buffer);
+            channel.force(true);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * The replaced segments may still be read through their old mappings, and on Windows
+     * a mapped file cannot be deleted, so the files which are not deleted are tried again
+     * after the next compaction. They are already superseded by the compacted segment.
+     */
+    private void deleteObsolete() {
+        for (Iterator<File> it = obsolete.iterator(); it.hasNext(); ) {
+            File file = it.next();
+            if (file.delete() || !file.exists()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Marks the newest occurrence of every command, numbering the commands of the segments
+     * consecutively. The commands are compared in the mapped files, and only their hashes
+     * and positions are kept on the heap, in an open addressing hash table. If there are
+     * more distinct commands than fit in the table, the rest of them are all kept.
+     */
+    private static BitSet newestOccurrences(Segment[] merged) {
+        int total = 0;
+        for (Segment segment : merged) {
+            total += segment.count;
+        }
+        int slots = Math.min(MAX_DEDUPE_SLOTS, Integer.highestOneBit(Math.max(1, total) * 2 - 1) << 1);
+        int[] hashes = new int[slots];
+        long[] positions = new long[slots]; // the segment in the high bits, the command in the low bits, plus one
+        int used = 0;
+        for (int s = 0; s < merged.length; s++) {
+            Segment segment = merged[s];
+            for (int i = 0; i < segment.count; i++) {
+                int hash = segment.hashOf(i);
+                int slot = findSlot(merged, hashes, positions, segment, i, hash);
+                if (positions[slot] == 0 && used >= slots / 2) {
+                    continue; // the table is full
+                }
+                if (positions[slot] == 0) {
+                    used++;
+                }
+                hashes[slot] = hash;
+                positions[slot] = ((long) s << 32 | i) + 1;
+            }
+        }
+        BitSet kept = new BitSet(total);
+        int position = 0;
+        for (int s = 0; s < merged.length; s++) {
+            Segment segment = merged[s];
+            for (int i = 0; i < segment.count; i++, position++) {
+                long found = positions[findSlot(merged, hashes, positions, segment, i, segment.hashOf(i))];
+                if (found == 0 || found == ((long) s << 32 | i) + 1) {
+                    kept.set(position);
+                }
+            }
+        }
+        return kept;
+    }
+
+    private static int findSlot(Segment[] merged, int[] hashes, long[] positions, Segment segment, int i, int hash) {
+        int mask = hashes.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long position = positions[slot];
+            if (position == 0) {
+                return slot;
+            }
+            position--;
+            if (hashes[slot] == hash
+                    && merged[(int) (position >>> 32)].sameCommand((int) position, segment, i)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Waits for the background compaction to finish and writes the commands to disk.
+     */
+    public void close() throws InterruptedException {
+        compactor.shutdown();
+        compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        synchronized (writeLock) {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+            }
+        }
+        deleteObsolete();
+    }
+
+    private static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * A file of length-prefixed commands. The length is written last, so a partially
+     * written command is seen as the end of the segment. Only one thread appends to
+     * a segment, and it publishes the new command by incrementing the count, so the
+     * readers must read the count before the offsets.
+     */
+    private static class Segment {
+
+        final File file;
+        final MappedByteBuffer buffer;
+        private volatile int[] offsets = new int[64];
+        volatile int count = 0;
+        int end = 0;
+
+        private Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        public static Segment open(File file, long size) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                Segment segment = new Segment(file, buffer);
+                segment.scan();
+                return segment;
+            } finally {
+                raf.close(); // the mapping stays valid
+            }
+        }
+
+        private void scan() {
+            while (end + LENGTH_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(end);
+                if (length <= 0 || end + LENGTH_SIZE + length > buffer.capacity()) {
+                    break;
+                }
+                addOffset(end);
+                end += LENGTH_SIZE + length;
+            }
+        }
+
+        private void addOffset(int offset) {
+            int[] offsets = this.offsets;
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count] = offset;
+            this.offsets = offsets;
+            count++;
+        }
+
+        public boolean append(byte[] bytes) {
+            if (end + LENGTH_SIZE + bytes.length > buffer.capacity()) {
+                return false;
+            }
+            ByteBuffer b = buffer.duplicate();
+            b.position(end + LENGTH_SIZE);
+            b.put(bytes);
+            buffer.putInt(end, bytes.length);
+            addOffset(end);
+            end += LENGTH_SIZE + bytes.length;
+            return true;
+        }
+
+        /**
+         * Returns the length-prefixed command without copying it to the heap.
+         */
+        public ByteBuffer record(int i) {
+            ByteBuffer b = buffer.duplicate();
+            b.position(offsets[i]);
+            b.limit(offsets[i] + LENGTH_SIZE + lengthOf(i));
+            return b;
+        }
+
+        int lengthOf(int i) {
+            return buffer.getInt(offsets[i]);
+        }
+
+        public byte[] bytes(int i) {
+            byte[] bytes = new byte[lengthOf(i)];
+            ByteBuffer b = buffer.duplicate();
+            b.position(offsets[i] + LENGTH_SIZE);
+            b.get(bytes);
+            return bytes;
+        }
+
+        public String get(int i) {
+            try {
+                return new String(bytes(i), "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        public int hashOf(int i) {
+            int start = offsets[i] + LENGTH_SIZE;
+            int end = start + lengthOf(i);
+            int hash = 1;
+            for (int pos = start; pos < end; pos++) {
+                hash = 31 * hash + buffer.get(pos);
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        public boolean sameCommand(int i, Segment other, int j) {
+            int length = lengthOf(i);
+            if (length != other.lengthOf(j)) {
+                return false;
+            }
+            int start = offsets[i] + LENGTH_SIZE;
+            int otherStart = other.offsets[j] + LENGTH_SIZE;
+            for (int k = 0; k < length; k++) {
+                if (buffer.get(start + k) != other.buffer.get(otherStart + k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean startsWith(int i, byte[] prefix) {
+            return prefix.length <= lengthOf(i) && regionMatches(offsets[i] + LENGTH_SIZE, prefix);
+        }
+
+        public boolean contains(int i, byte[] pattern) {
+            // UTF-8 is self-synchronizing, so matching the bytes is the same as matching the characters
+            int start = offsets[i] + LENGTH_SIZE;
+            int last = start + lengthOf(i) - pattern.length;
+            for (int pos = start; pos <= last; pos++) {
+                if (regionMatches(pos, pattern)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean regionMatches(int pos, byte[] pattern) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer.get(pos + j) != pattern[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
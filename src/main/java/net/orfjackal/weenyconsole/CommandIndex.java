@@ -0,0 +1,370 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * The commands of one or more {@link CommandService} targets, grouped by method name.
+ * The methods of a target in a namespace are named as if the namespace was the first
+ * word of their name. The overloads of each name are ranked once, when the target is
+ * indexed, so that the more specific overloads come first: primitive before wrapper,
+ * enum before {@link String}, subclass before superclass.
+ * <p/>
+ * The index is immutable. Adding a target creates a new index.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+class CommandIndex {
+
+    private static final Overload[] NO_OVERLOADS = new Overload[0];
+    private static final int MAX_SUGGESTIONS = 5;
+
+    private final Map<String, Overload[]> overloadsByName;
+    private final SortedSet<String> spellings = new TreeSet<String>();
+    private final int longestMethodName;
+    private final int mostWordsInSpelling;
+    private volatile BkTree vocabulary;
+
+    public CommandIndex() {
+        this(new HashMap<String, Overload[]>());
+    }
+
+    private CommandIndex(Map<String, Overload[]> overloadsByName) {
+        this.overloadsByName = overloadsByName;
+        int longest = 0;
+        int mostWords = 0;
+        for (String methodName : overloadsByName.keySet()) {
+            longest = Math.max(longest, methodName.length());
+            mostWords = Math.max(mostWords, CommandUtil.wordsFromMethodName(methodName).length);
+            spellings.add(spellingOf(methodName));
+        }
+        this.longestMethodName = longest;
+        this.mostWordsInSpelling = mostWords;
+    }
+
+    /**
+     * Returns a new index which contains also the methods of the target.
+     *
+     * @param namespace the first word of the target's commands, or null for no namespace
+     * @throws IllegalArgumentException if some overloads have the same parameter types
+     */
+    public CommandIndex withTarget(String namespace, CommandService target) {
+        if (namespace != null && CommandUtil.methodNameFrom(new String[]{namespace}, 1) == null) {
+            throw new IllegalArgumentException("namespace is not a valid identifier: " + namespace);
+        }
+        Map<String, List<Overload>> changed = new HashMap<String, List<Overload>>();
+        for (Method method : target.getClass().getMethods()) {
+            if (implementsTheMarkerInterface(method)
+                    && isPublicInstanceMethod(method)
+                    && !method.isBridge()) {
+                String methodName = namespaced(namespace, method.getName());
+                List<Overload> overloads = changed.get(methodName);
+                if (overloads == null) {
+                    overloads = new ArrayList<Overload>(Arrays.asList(overloadsOf(methodName)));
+                    changed.put(methodName, overloads);
+                }
+                overloads.add(new Overload(target, method));
+            }
+        }
+        Map<String, Overload[]> result = new HashMap<String, Overload[]>(overloadsByName);
+        for (Map.Entry<String, List<Overload>> entry : changed.entrySet()) {
+            checkForAmbiguities(entry.getValue());
+            result.put(entry.getKey(), rank(entry.getValue()));
+        }
+        return new CommandIndex(result);
+    }
+
+    private static String namespaced(String namespace, String methodName) {
+        if (namespace == null) {
+            return methodName;
+        }
+        return CommandUtil.methodNameFrom(new String[]{namespace, methodName}, 2);
+    }
+
+    public int longestMethodName() {
+        return longestMethodName;
+    }
+
+    /**
+     * Returns the command words of the method name, separated by single spaces.
+     */
+    static String spellingOf(String methodName) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : CommandUtil.wordsFromMethodName(methodName)) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(word);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the commands, written as words separated by single spaces,
+     * which start with the given prefix. The results are in alphabetical order.
+     */
+    public List<String> spellingsStartingWith(String prefix) {
+        List<String> results = new ArrayList<String>();
+        for (String spelling : spellings.tailSet(prefix)) {
+            if (!spelling.startsWith(prefix)) {
+                break;
+            }
+            results.add(spelling);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the commands, written as words separated by single spaces, which are the
+     * closest to the beginning of the given words. The closest commands are first.
+     */
+    public List<String> suggestionsFor(String[] words) {
+        BkTree vocabulary = vocabulary();
+        final Map<String, Integer> distances = new HashMap<String, Integer>();
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < words.length && i < mostWordsInSpelling && words[i] != null; i++) {
+            if (i > 0) {
+                prefix.append(' ');
+            }
+            prefix.append(words[i]);
+            int maxDistance = Math.max(1, Math.min(3, prefix.length() / 3));
+            for (Map.Entry<String, Integer> found : vocabulary.search(prefix.toString(), maxDistance).entrySet()) {
+                Integer previous = distances.get(found.getKey());
+                if (previous == null || previous > found.getValue()) {
+                    distances.put(found.getKey(), found.getValue());
+                }
+            }
+        }
+        List<String> results = new ArrayList<String>(distances.keySet());
+        Collections.sort(results, new Comparator<String>() {
+            public int compare(String s1, String s2) {
+                int cmp = distances.get(s1) - distances.get(s2);
+                return (cmp != 0) ? cmp : s1.compareTo(s2);
+            }
+        });
+        return results.subList(0, Math.min(results.size(), MAX_SUGGESTIONS));
+    }
+
+    /**
+     * Built only when the first suggestions are needed. If many threads need it
+     * at the same time, each may build its own, but the results are the same.
+     */
+    private BkTree vocabulary() {
+        BkTree tree = vocabulary;
+        if (tree == null) {
+            tree = new BkTree();
+            for (String spelling : spellings) {
+                tree.add(spelling);
+            }
+            vocabulary = tree;
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the names of all methods in alphabetical order.
+     */
+    public SortedSet<String> methodNames() {
+        return new TreeSet<String>(overloadsByName.keySet());
+    }
+
+    /**
+     * Returns the overloads with the given name, the most specific ones first.
+     */
+    public Overload[] overloadsOf(String methodName) {
+        Overload[] overloads = overloadsByName.get(methodName);
+        return overloads != null ? overloads : NO_OVERLOADS;
+    }
+
+    private static Overload[] rank(List<Overload> overloads) {
+        List<Overload> remaining = new ArrayList<Overload>(overloads);
+        Collections.sort(remaining, new SignatureComparator()); // deterministic order for incomparable overloads
+        List<Overload> ranked = new ArrayList<Overload>();
+        while (!remaining.isEmpty()) {
+            List<Overload> mostSpecific = new ArrayList<Overload>();
+            for (Overload candidate : remaining) {
+                if (!isAnyMoreSpecificThan(candidate, remaining)) {
+                    mostSpecific.add(candidate);
+                }
+            }
+            ranked.addAll(mostSpecific);
+            remaining.removeAll(mostSpecific);
+        }
+        // the overloads of the previous index must not be modified, so the ranked overloads are new instances
+        Overload[] results = new Overload[ranked.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new Overload(ranked.get(i).target, ranked.get(i).method);
+        }
+        for (Overload overload : results) {
+            for (Overload other : results) {
+                if (isMoreSpecific(overload.method, other.method)) {
+                    overload.lessSpecificOverloads.add(other);
+                }
+            }
+        }
+        return results;
+    }
+
+    private static boolean isAnyMoreSpecificThan(Overload overload, List<Overload> others) {
+        for (Overload other : others) {
+            if (isMoreSpecific(other.method, overload.method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Overloads with the same parameter types, such as the same method in two targets,
+     * would be ambiguous for every command, so they are reported already when the target
+     * is indexed. Overloads which are more specific at different positions (such as
+     * <tt>foo(int, Integer)</tt> and <tt>foo(Integer, int)</tt>) are ambiguous only for
+     * some commands, because a null word matches only the wrapper type, so they are
+     * left to be reported when such a command is executed.
+     */
+    private static void checkForAmbiguities(List<Overload> overloads) {
+        for (int i = 0; i < overloads.size(); i++) {
+            for (int j = i + 1; j < overloads.size(); j++) {
+                Method m1 = overloads.get(i).method;
+                Method m2 = overloads.get(j).method;
+                if (m1.isVarArgs() == m2.isVarArgs()
+                        && Arrays.equals(m1.getParameterTypes(), m2.getParameterTypes())) {
+                    throw new IllegalArgumentException("ambiguous methods: "
+                            + m1.toGenericString() + " and " + m2.toGenericString());
+                }
+            }
+        }
+    }
+
+    private static boolean haveComparableParameters(Method m1, Method m2) {
+        Class<?>[] types1 = m1.getParameterTypes();
+        Class<?>[] types2 = m2.getParameterTypes();
+        if (types1.length != types2.length || m1.isVarArgs() != m2.isVarArgs()) {
+            return false;
+        }
+        for (int i = 0; i < types1.length; i++) {
+            if (!isAsSpecific(types1[i], types2[i]) && !isAsSpecific(types2[i], types1[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isMoreSpecific(Method m1, Method m2) {
+        if (!haveComparableParameters(m1, m2)) {
+            return false;
+        }
+        Class<?>[] types1 = m1.getParameterTypes();
+        Class<?>[] types2 = m2.getParameterTypes();
+        boolean strictlyMoreSpecific = false;
+        for (int i = 0; i < types1.length; i++) {
+            if (!isAsSpecific(types1[i], types2[i])) {
+                return false;
+            }
+            if (!types1[i].equals(types2[i])) {
+                strictlyMoreSpecific = true;
+            }
+        }
+        return strictlyMoreSpecific;
+    }
+
+    private static boolean isAsSpecific(Class<?> type1, Class<?> type2) {
+        if (type1.isArray() && type2.isArray()) {
+            return isAsSpecific(type1.getComponentType(), type2.getComponentType());
+        }
+        if (type1.equals(type2)) {
+            return true;
+        }
+        if (type2.isPrimitive()) {
+            return false;
+        }
+        if (type1.isPrimitive()) {
+            // primitive before wrapper
+            return type2.isAssignableFrom(ConverterProvider.wrapperTypeOf(type1));
+        }
+        if (type1.isEnum() && type2.isAssignableFrom(String.class)) {
+            // enum before String
+            return true;
+        }
+        // subclass before superclass
+        return type2.isAssignableFrom(type1);
+    }
+
+    private static boolean implementsTheMarkerInterface(Method method) {
+        return CommandService.class.isAssignableFrom(method.getDeclaringClass());
+    }
+
+    private static boolean isPublicInstanceMethod(Method method) {
+        return Modifier.isPublic(method.getModifiers())
+                && !Modifier.isStatic(method.getModifiers());
+    }
+
+    public static class Overload {
+
+        public final CommandService target;
+        public final Method method;
+        public final long cacheTimeToLive;
+        public final RateLimited rateLimit;
+        public final String concurrencyGroup;
+        public final boolean threadSafe;
+        private final Set<Overload> lessSpecificOverloads = new HashSet<Overload>();
+
+        private Overload(CommandService target, Method method) {
+            this.target = target;
+            this.method = method;
+            Cacheable cacheable = method.getAnnotation(Cacheable.class);
+            this.cacheTimeToLive = (cacheable != null) ? cacheable.timeToLive() : 0;
+            this.rateLimit = method.getAnnotation(RateLimited.class);
+            ConcurrencyGroup group = method.getAnnotation(ConcurrencyGroup.class);
+            this.concurrencyGroup = (group != null) ? group.value() : null;
+            this.threadSafe = method.isAnnotationPresent(ThreadSafe.class);
+        }
+
+        public boolean isCacheable() {
+            return cacheTimeToLive > 0;
+        }
+
+        public boolean isMoreSpecificThan(Overload other) {
+            return lessSpecificOverloads.contains(other);
+        }
+    }
+
+    private static class SignatureComparator implements Comparator<Overload> {
+
+        public int compare(Overload o1, Overload o2) {
+            return o1.method.toGenericString().compareTo(o2.method.toGenericString());
+        }
+    }
+}
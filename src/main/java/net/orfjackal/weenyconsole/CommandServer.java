@@ -0,0 +1,247 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import net.orfjackal.weenyconsole.exceptions.CommandExecutionException;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the commands of clients connected over TCP. Human clients use the text protocol:
+ * one command per line, answered by one line with the result or <tt>"error: "</tt> and the
+ * error message. The line breaks and backslashes of the answer are escaped as <tt>\n</tt>,
+ * <tt>\r</tt> and <tt>\\</tt>, so that an answer is always one line.
+ * Machine clients use the {@link BinaryProtocol} on the same port, which they choose by
+ * sending {@link BinaryProtocol#HANDSHAKE} as the first byte.
+ * <p/>
+ * The commands are not authenticated, so by default the server accepts only local clients.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class CommandServer {
+
+    public static final int DEFAULT_MAX_REQUEST_SIZE = 16 * 1024 * 1024;
+
+    private static final String ERROR_PREFIX = "error: ";
+
+    private final CommandExecuter executer;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> clients = Collections.synchronizedSet(new HashSet<Socket>());
+    private volatile int maxRequestSize = DEFAULT_MAX_REQUEST_SIZE;
+    private final ExecutorService threads = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "CommandServer-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /**
+     * Starts listening on the port of the loopback address. Port 0 uses any free port.
+     */
+    public CommandServer(CommandExecuter executer, int port) throws IOException {
+        this(executer, InetAddress.getByName(null), port);
+    }
+
+    /**
+     * Starts listening on the port of the address. A null address accepts connections
+     * on all local addresses.
+     */
+    public CommandServer(CommandExecuter executer, InetAddress bindAddress, int port) throws IOException {
+        this.executer = executer;
+        this.serverSocket = new ServerSocket(port, 0, bindAddress);
+        threads.execute(new Runnable() {
+            public void run() {
+                acceptClients();
+            }
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public InetAddress getBindAddress() {
+        return serverSocket.getInetAddress();
+    }
+
+    /**
+     * Limits the size of a {@link BinaryProtocol} request in bytes, so that an unauthenticated
+     * client can not make the server buffer arbitrarily many or large arguments. A client which
+     * sends a larger request is disconnected. The default is {@link #DEFAULT_MAX_REQUEST_SIZE}.
+     */
+    public void setMaxRequestSize(int bytes) {
+        if (bytes < 8) {
+            throw new IllegalArgumentException("a request is at least 8 bytes: " + bytes);
+        }
+        maxRequestSize = bytes;
+    }
+
+    /**
+     * Stops listening and disconnects the clients.
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        synchronized (clients) {
+            for (Socket client : clients) {
+                client.close();
+            }
+        }
+        threads.shutdown();
+    }
+
+    private void acceptClients() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket client = serverSocket.accept();
+                clients.add(client);
+                threads.execute(new Runnable() {
+                    public void run() {
+                        serve(client);
+                    }
+                });
+            } catch (SocketException e) {
+                // the server was closed
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try {
+            PushbackInputStream in = new PushbackInputStream(new BufferedInputStream(client.getInputStream()));
+            OutputStream out = new BufferedOutputStream(client.getOutputStream());
+            int first = in.read();
+            if (first == BinaryProtocol.HANDSHAKE) {
+                serveBinary(new DataInputStream(in), new DataOutputStream(out));
+            } else if (first != -1) {
+                in.unread(first);
+                serveText(new BufferedReader(new InputStreamReader(in, "UTF-8")), new OutputStreamWriter(out, "UTF-8"));
+            }
+        } catch (EOFException e) {
+            // the client disconnected in the middle of a request
+        } catch (SocketException e) {
+            // the client disconnected or the server was closed
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            clients.remove(client);
+            try {
+                client.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void serveText(BufferedReader in, Writer out) throws IOException {
+        String command;
+        while ((command = in.readLine()) != null) {
+            try {
+                Object result = executer.execute(command);
+                out.write(result != null ? escapeLineBreaks(String.valueOf(result)) : "");
+            } catch (CommandExecutionException e) {
+                out.write(ERROR_PREFIX + escapeLineBreaks(e.getMessage()));
+            }
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    private static String escapeLineBreaks(String s) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escaped = (c == '\\') ? "\\\\" : (c == '\n') ? "\\n" : (c == '\r') ? "\\r" : null;
+            if (escaped != null && sb == null) {
+                sb = new StringBuilder(s.length() + 16).append(s, 0, i);
+            }
+            if (sb != null) {
+                if (escaped != null) {
+                    sb.append(escaped);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return (sb != null) ? sb.toString() : s;
+    }
+
+    private void serveBinary(DataInputStream in, DataOutputStream out) throws IOException {
+        MethodTable table = executer.methodTable();
+        BinaryProtocol.writeMethodTable(out, table);
+        out.flush();
+        while (true) {
+            int methodId;
+            try {
+                methodId = in.readInt();
+            } catch (EOFException e) {
+                return; // the client disconnected between requests
+            }
+            String[] args;
+            try {
+                args = BinaryProtocol.readArguments(in, maxRequestSize);
+            } catch (ProtocolException e) {
+                // the rest of the request was not read, so the next request can not be found
+                BinaryProtocol.writeResponse(out, false, e.getMessage());
+                out.flush();
+                return;
+            }
+            if (methodId < 0 || methodId >= table.size()) {
+                BinaryProtocol.writeResponse(out, false, "unknown method id: " + methodId);
+            } else {
+                try {
+                    Object result = table.execute(methodId, args);
+                    BinaryProtocol.writeResponse(out, true, (result != null) ? String.valueOf(result) : null);
+                } catch (CommandExecutionException e) {
+                    BinaryProtocol.writeResponse(out, false, e.getMessage());
+                }
+            }
+            out.flush();
+        }
+    }
+}
@@ -46,11 +46,19 @@ public class CommandUtil {
     private CommandUtil() {
     }
 
+    /**
+     * Splits the command into words at whitespace. A word may contain whitespace inside
+     * double quotes or when escaped, and <tt>\0</tt> is a null word. A pair of double quotes
+     * with nothing between them is an empty word, which can be a parameter but not a part of
+     * the command name, so <tt>foo ""</tt> passes an empty string to <tt>foo</tt>, whereas
+     * <tt>"" foo</tt> is not a command.
+     */
     public static String[] wordsFrom(String command) {
         List<String> finishedWords = new ArrayList<String>();
         String word = "";
         boolean escaped = false;
         boolean insideQuotes = false;
+        boolean quoted = false; // an empty word is a word only if it is quoted
         for (int currentPos = 0; currentPos < command.length(); currentPos++) {
             char c = command.charAt(currentPos);
             if (escaped) {
@@ -60,11 +68,13 @@ public class CommandUtil {
                 escaped = true;
             } else if (c == '"') {
                 insideQuotes = !insideQuotes;
+                quoted = true;
             } else if (Character.isWhitespace(c) && !insideQuotes) {
-                if (word.length() > 0) {
+                if (word.length() > 0 || quoted) {
                     finishedWords.add(word);
                 }
                 word = "";
+                quoted = false;
             } else {
                 word = word + c;
             }
@@ -75,18 +85,60 @@ public class CommandUtil {
         if (escaped) {
             throw new MalformedCommandException(command, "escape sequence expected", command.length());
         }
-        if (word.length() > 0) {
+        if (word.length() > 0 || quoted) {
             finishedWords.add(word);
         }
         assert finishedWords.size() > 0;
         return finishedWords.toArray(new String[finishedWords.size()]);
     }
 
+    /**
+     * The reverse of {@link #wordsFrom}: joins the words into a command, quoting and escaping
+     * them as needed, so that <tt>wordsFrom(commandFrom(words))</tt> returns the same words.
+     * A null word is written as <tt>\0</tt>.
+     */
+    public static String commandFrom(String... words) {
+        StringBuilder command = new StringBuilder();
+        for (String word : words) {
+            if (command.length() > 0) {
+                command.append(' ');
+            }
+            if (word == null) {
+                command.append("\\0");
+                continue;
+            }
+            boolean quoted = word.length() == 0 || containsWhitespace(word);
+            if (quoted) {
+                command.append('"');
+            }
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (c == '\\' || c == '"') {
+                    command.append('\\');
+                }
+                command.append(c);
+            }
+            if (quoted) {
+                command.append('"');
+            }
+        }
+        return command.toString();
+    }
+
+    private static boolean containsWhitespace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isWhitespace(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static String methodNameFrom(String[] words, int wordsFromStart) {
         String methodName = "";
         for (int i = 0; i < wordsFromStart; i++) {
             String word = words[i];
-            if (word == null) {
+            if (word == null || word.length() == 0) {
                 return null;
             }
             if (i > 0) {
@@ -100,6 +152,55 @@ public class CommandUtil {
         return null;
     }
 
+    /**
+     * Returns the method names which can be formed from the words, so that the name at index
+     * <tt>i</tt> is the same as <tt>methodNameFrom(words, i + 1)</tt>. The names are built
+     * incrementally and names longer than <tt>maxLength</tt> are left out (as nulls).
+     * A null or empty word cannot be a part of a method name, so it ends the names.
+     */
+    public static String[] methodNamesFrom(String[] words, int maxLength) {
+        String[] methodNames = new String[words.length];
+        StringBuilder methodName = new StringBuilder();
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (word == null || word.length() == 0) {
+                break;
+            }
+            methodName.append(i > 0 ? capitalize(word) : word);
+            if (methodName.length() > maxLength) {
+                break;
+            }
+            String s = methodName.toString();
+            if (isJavaMethodIdentifier(s)) {
+                methodNames[i] = s;
+            }
+        }
+        return methodNames;
+    }
+
+    /**
+     * The reverse of {@link #methodNameFrom}: splits a method name into the words
+     * with which it can be written as a command. For example <tt>"methodOneMore"</tt>
+     * is split into <tt>"method"</tt>, <tt>"one"</tt> and <tt>"more"</tt>, but
+     * <tt>"getHTTPStatus"</tt> is split into <tt>"get"</tt> and <tt>"HTTPStatus"</tt>.
+     */
+    public static String[] wordsFromMethodName(String methodName) {
+        List<String> words = new ArrayList<String>();
+        int wordStart = 0;
+        for (int i = 1; i < methodName.length(); i++) {
+            if (Character.isUpperCase(methodName.charAt(i))
+                    && !Character.isUpperCase(methodName.charAt(i - 1))) {
+                words.add(methodName.substring(wordStart, i));
+                wordStart = i;
+            }
+        }
+        words.add(methodName.substring(wordStart));
+        for (int i = 1; i < words.size(); i++) {
+            words.set(i, decapitalize(words.get(i)));
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
     private static String unescape(char escaped, String currentWord, List<String> finishedWords,
                                    String command, int currentPos) {
         Character unescaped;
@@ -138,4 +239,11 @@ public class CommandUtil {
     private static String capitalize(String word) {
         return word.substring(0, 1).toUpperCase() + word.substring(1);
     }
+
+    private static String decapitalize(String word) {
+        if (word.length() > 1 && Character.isUpperCase(word.charAt(1))) {
+            return word; // acronym
+        }
+        return word.substring(0, 1).toLowerCase() + word.substring(1);
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A concurrent map which evicts its least recently used entries when it grows over its maximum
+ * size. Reading never blocks: every entry remembers when it was last used, and the thread which
+ * adds an entry over the maximum size scans the map and evicts a batch of the oldest entries,
+ * so the map may briefly hold a few entries too many.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+class ConcurrentLruMap<K, V> {
+
+    private final int maxSize;
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<K, Entry<V>>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public ConcurrentLruMap(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = System.nanoTime();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        if (maxSize == 0) {
+            return;
+        }
+        entries.put(key, new Entry<V>(value));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void remove(K key, V value) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.value == value) {
+            entries.remove(key, entry);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Stale entries are evicted before the least recently used ones.
+     */
+    protected boolean isStale(V value, long now) {
+        return false;
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            for (Iterator<Entry<V>> it = entries.values().iterator(); it.hasNext(); ) {
+                if (isStale(it.next().value, now)) {
+                    it.remove();
+                }
+            }
+            int excess = entries.size() - maxSize;
+            if (excess <= 0) {
+                return;
+            }
+            // evict a few more than needed, so that the next puts do not need to scan the map again
+            int batch = Math.min(excess + maxSize / 16, entries.size());
+            long[] ages = new long[entries.size()];
+            int count = 0;
+            for (Entry<V> entry : entries.values()) {
+                if (count == ages.length) {
+                    break;
+                }
+                ages[count++] = now - entry.lastUsed;
+            }
+            Arrays.sort(ages, 0, count);
+            long minAge = ages[Math.max(0, count - batch)];
+            for (Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator(); it.hasNext() && batch > 0; ) {
+                if (now - it.next().getValue().lastUsed >= minAge) {
+                    it.remove();
+                    batch--;
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static class Entry<V> {
+        public final V value;
+        public volatile long lastUsed = System.nanoTime();
+
+        public Entry(V value) {
+            this.value = value;
+        }
+    }
+}
@@ -31,13 +31,13 @@
 
 package net.orfjackal.weenyconsole;
 
+import net.orfjackal.weenyconsole.converters.DelegatingConverter;
 import net.orfjackal.weenyconsole.exceptions.InvalidSourceValueException;
 import net.orfjackal.weenyconsole.exceptions.TargetTypeNotSupportedException;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Esko Luontola
@@ -46,46 +46,163 @@ import java.util.Set;
 public class ConverterProvider implements ConversionService {
 
     private final Map<Class<?>, Converter> converters = new HashMap<Class<?>, Converter>();
+    private final ConverterProvider parent;
+    private boolean unmodifiable = false;
+    private volatile ValueCache valueCache = null;
+    private volatile int modCount = 0;
+    private volatile Conversions conversions = new Conversions(0);
+
+    public ConverterProvider() {
+        this(null);
+    }
+
+    /**
+     * Creates a provider which uses also the converters of the parent, unless it has
+     * its own converter for the same target type. The parent's converters should not
+     * depend on their provider, because they will keep on using the parent.
+     */
+    public ConverterProvider(ConverterProvider parent) {
+        this.parent = parent;
+    }
 
     public Converter converterFor(Class<?> targetType) {
-        return converters.get(targetType);
+        Converter converter = converters.get(targetType);
+        if (converter == null && parent != null) {
+            converter = parent.converterFor(targetType);
+        }
+        return converter;
     }
 
     public void addConverter(Converter converter) {
+        checkModifiable();
         Class<?> targetType = converter.supportedTargetType();
         if (targetType == null) {
             throw new IllegalArgumentException("supportedTargetType() returned null: " + converter);
         }
         converters.put(targetType, converter);
+        modCount++;
         converter.setProvider(this);
     }
 
+    /**
+     * Removes only this provider's own converter. The parent's converter for the same type, if any, remains in use.
+     */
     public void removeConverterFor(Class<?> targetType) {
+        checkModifiable();
         Converter converter = converters.remove(targetType);
+        modCount++;
         if (converter != null) {
             converter.setProvider(null);
         }
     }
 
+    /**
+     * After this call the converters of this provider can not be changed, so
+     * that the provider can be shared between threads and used as a parent.
+     */
+    void makeUnmodifiable() {
+        unmodifiable = true;
+    }
+
+    /**
+     * Enables reusing the converted values, so that the same source value is not converted
+     * again, when the converter is a {@link CacheableConverter}, or when it is a converter of an
+     * unmodifiable provider (such as the default converters of {@link CommandExecuter}) and the
+     * target type is immutable (such as {@link String}, the primitive wrappers,
+     * {@link java.math.BigInteger}, {@link java.math.BigDecimal} and enums). Other converters
+     * may give a different value every time. At most <tt>maxSizePerType</tt> values per target
+     * type are kept, evicting the least recently used. Zero disables the cache, which is the
+     * default. The cache is emptied when the converters of this provider or its parent change.
+     */
+    public void setValueCacheSize(int maxSizePerType) {
+        checkModifiable();
+        if (maxSizePerType < 0) {
+            throw new IllegalArgumentException("maxSizePerType must not be negative: " + maxSizePerType);
+        }
+        valueCache = (maxSizePerType > 0) ? new ValueCache(maxSizePerType, modCount()) : null;
+    }
+
+    /**
+     * Returns the target types which have been looked up from the value cache.
+     */
+    public Set<Class<?>> valueCacheTypes() {
+        ValueCache cache = valueCache;
+        return (cache != null) ? new HashSet<Class<?>>(cache.cachesByType.keySet()) : new HashSet<Class<?>>();
+    }
+
+    /**
+     * Returns how many values of the target type were found in the value cache.
+     */
+    public long valueCacheHits(Class<?> targetType) {
+        ValueCache cache = valueCache;
+        TypeCache typeCache = (cache != null) ? cache.cachesByType.get(targetType) : null;
+        return (typeCache != null) ? typeCache.hits.sum() : 0;
+    }
+
+    /**
+     * Returns how many values of the target type were not found in the value cache and had to be converted.
+     */
+    public long valueCacheMisses(Class<?> targetType) {
+        ValueCache cache = valueCache;
+        TypeCache typeCache = (cache != null) ? cache.cachesByType.get(targetType) : null;
+        return (typeCache != null) ? typeCache.misses.sum() : 0;
+    }
+
+    private void checkModifiable() {
+        if (unmodifiable) {
+            throw new UnsupportedOperationException("the converters of this provider can not be changed");
+        }
+    }
+
     private Set<Class<?>> supportedTargetTypes() {
-        return Collections.unmodifiableSet(converters.keySet());
+        if (parent == null) {
+            return Collections.unmodifiableSet(converters.keySet());
+        }
+        Set<Class<?>> types = new HashSet<Class<?>>(parent.supportedTargetTypes());
+        types.addAll(converters.keySet());
+        return types;
     }
 
     public Object valueOf(String sourceValue, Class<?> targetType) throws TargetTypeNotSupportedException, InvalidSourceValueException {
         if (convertsToNull(targetType, sourceValue)) {
             return null;
         }
-        try {
-            return convertUsing(converterFor(targetType), sourceValue, targetType);
-        } catch (TargetTypeNotSupportedException e) {
-            // FALLTHROUGH
+        ValueCache cache = validValueCache();
+        Conversion conversion = conversionFor(targetType);
+        if (cache == null || !conversion.cacheable) {
+            return conversion.convert(sourceValue);
         }
-        try {
-            return convertUsingConverterForSubclassOf(targetType, sourceValue);
-        } catch (TargetTypeNotSupportedException e) {
-            // FALLTHROUGH
+        Object value = cache.get(targetType, sourceValue);
+        if (value == null) {
+            value = conversion.convert(sourceValue);
+            cache.put(targetType, sourceValue, value);
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the value cache with an empty one, if the converters have changed since it was created.
+     * A value which is converted while the converters change is put into the cache which is replaced.
+     */
+    private ValueCache validValueCache() {
+        ValueCache cache = valueCache;
+        if (cache == null) {
+            return null;
+        }
+        int modCount = modCount();
+        if (cache.modCount != modCount) {
+            cache = new ValueCache(cache.maxSizePerType, modCount);
+            valueCache = cache;
+        }
+        return cache;
+    }
+
+    private boolean isCacheable(Converter converter, Class<?> converterType, Class<?> targetType) {
+        if (converter instanceof CacheableConverter) {
+            return true;
         }
-        return convertUsingConverterForSuperclassOf(targetType, sourceValue);
+        Class<?> type = targetType.isPrimitive() ? wrapperTypeOf(targetType) : targetType;
+        return ownerOf(converterType).unmodifiable && type != null && ImmutableValues.isImmutableType(type);
     }
 
     private static boolean convertsToNull(Class<?> targetType, String sourceValue) throws InvalidSourceValueException {
@@ -98,38 +215,226 @@ public class ConverterProvider implements ConversionService {
         return false;
     }
 
-    private Object convertUsingConverterForSubclassOf(Class<?> targetType, String sourceValue) throws InvalidSourceValueException, TargetTypeNotSupportedException {
+    /**
+     * Returns the steps of converting to the target type, which are resolved once and then reused
+     * until the converters of this provider or its parent are changed.
+     */
+    private Conversion conversionFor(Class<?> targetType) {
+        Conversions current = conversions;
+        int modCount = modCount();
+        if (current.modCount != modCount) {
+            current = new Conversions(modCount);
+            conversions = current;
+        }
+        return conversionFor(targetType, current, new HashSet<Class<?>>());
+    }
+
+    private int modCount() {
+        return modCount + (parent != null ? parent.modCount() : 0);
+    }
+
+    /**
+     * @param inProgress the target types whose conversions are being resolved, to detect cycles.
+     * @return null if the conversion is part of a cycle.
+     */
+    private Conversion conversionFor(Class<?> targetType, Conversions compiled, Set<Class<?>> inProgress) {
+        Conversion conversion = compiled.byTargetType.get(targetType);
+        if (conversion != null) {
+            return conversion;
+        }
+        if (!inProgress.add(targetType)) {
+            return null;
+        }
+        try {
+            conversion = resolveConversion(targetType, compiled, inProgress);
+        } finally {
+            inProgress.remove(targetType);
+        }
+        compiled.byTargetType.putIfAbsent(targetType, conversion);
+        return conversion;
+    }
+
+    /**
+     * Tries first the converter of the target type. A primitive type is then converted like its
+     * wrapper type, unless it has its own converter. Other types are then tried with the converters
+     * of their subclasses and superclasses.
+     */
+    private Conversion resolveConversion(Class<?> targetType, Conversions compiled, Set<Class<?>> inProgress) {
+        List<Step> steps = new ArrayList<Step>();
+        Converter exact = converterFor(targetType);
+        if (exact != null) {
+            steps.add(stepFor(exact, targetType, targetType, compiled, inProgress));
+        }
+        Class<?> wrapperType = targetType.isPrimitive() ? wrapperTypeOf(targetType) : null;
+        if (wrapperType != null) {
+            Conversion wrapper = conversionFor(wrapperType, compiled, inProgress);
+            steps.add((wrapper != null) ? new DelegatingStep(wrapper, null) : new ProviderStep(this, wrapperType));
+            return new Conversion(targetType, steps, true);
+        }
         for (Class<?> clazz : supportedTargetTypes()) {
-            try {
-                if (targetType.isAssignableFrom(clazz) && !targetType.equals(clazz)) {
-                    return convertUsing(converterFor(clazz), sourceValue, targetType);
-                }
-            } catch (TargetTypeNotSupportedException e) {
-                // FALLTHROUGH
+            if (targetType.isAssignableFrom(clazz) && !targetType.equals(clazz)) {
+                steps.add(stepFor(converterFor(clazz), clazz, targetType, compiled, inProgress));
             }
         }
-        throw new TargetTypeNotSupportedException(sourceValue, targetType);
+        for (Class<?> clazz = targetType.getSuperclass(); clazz != null; clazz = clazz.getSuperclass()) {
+            Converter converter = converterFor(clazz);
+            if (converter != null) {
+                steps.add(stepFor(converter, clazz, targetType, compiled, inProgress));
+            }
+        }
+        return new Conversion(targetType, steps, false);
     }
 
-    private Object convertUsingConverterForSuperclassOf(Class<?> targetType, String sourceValue) throws InvalidSourceValueException, TargetTypeNotSupportedException {
-        for (Class<?> clazz = targetType.getSuperclass(); clazz != null; clazz = clazz.getSuperclass()) {
-            try {
-                return convertUsing(converterFor(clazz), sourceValue, targetType);
-            } catch (TargetTypeNotSupportedException e) {
-                // FALLTHROUGH
+    /**
+     * A {@link DelegatingConverter} would call back into its provider,
+     * so its conversion is looked up already here, unless it would be a cycle.
+     */
+    private Step stepFor(Converter converter, Class<?> converterType, Class<?> targetType,
+                         Conversions compiled, Set<Class<?>> inProgress) {
+        if (converter instanceof DelegatingConverter) {
+            Class<?> delegateTo = ((DelegatingConverter) converter).getDelegateTo();
+            ConverterProvider owner = ownerOf(converterType);
+            Conversion delegate = (owner == this)
+                    ? conversionFor(delegateTo, compiled, inProgress)
+                    : owner.conversionFor(delegateTo);
+            if (delegate != null) {
+                return new DelegatingStep(delegate, targetType);
             }
         }
+        return new ConverterStep(converter, targetType, isCacheable(converter, converterType, targetType));
+    }
+
+    private ConverterProvider ownerOf(Class<?> converterType) {
+        return converters.containsKey(converterType) ? this : parent.ownerOf(converterType);
+    }
+
+    private static Object checkResult(Object o, String sourceValue, Class<?> targetType) throws TargetTypeNotSupportedException {
+        if (targetType.isAssignableFrom(o.getClass()) || canBeUnboxed(o.getClass(), targetType)) {
+            return o;
+        }
         throw new TargetTypeNotSupportedException(sourceValue, targetType);
     }
 
-    private static Object convertUsing(Converter converter, String sourceValue, Class<?> targetType) throws InvalidSourceValueException, TargetTypeNotSupportedException {
-        if (converter != null) {
-            Object o = converter.valueOf(sourceValue, targetType);
-            if (targetType.isAssignableFrom(o.getClass()) || canBeUnboxed(o.getClass(), targetType)) {
-                return o;
+    private static class Conversions {
+        public final int modCount;
+        public final ConcurrentMap<Class<?>, Conversion> byTargetType = new ConcurrentHashMap<Class<?>, Conversion>();
+
+        public Conversions(int modCount) {
+            this.modCount = modCount;
+        }
+    }
+
+    private static class Conversion {
+
+        private final Class<?> targetType;
+        private final Step[] steps;
+        private final boolean lastStepIsFinal;
+        public final boolean cacheable;
+
+        /**
+         * @param lastStepIsFinal whether the failure of the last step is reported as is,
+         *                        instead of "target type not supported" for this target type.
+         */
+        public Conversion(Class<?> targetType, List<Step> steps, boolean lastStepIsFinal) {
+            this.targetType = targetType;
+            this.steps = steps.toArray(new Step[steps.size()]);
+            this.lastStepIsFinal = lastStepIsFinal;
+            boolean cacheable = this.steps.length > 0;
+            for (Step step : this.steps) {
+                cacheable &= step.isCacheable();
             }
+            this.cacheable = cacheable;
+        }
+
+        public Object convert(String sourceValue) throws TargetTypeNotSupportedException, InvalidSourceValueException {
+            int last = steps.length - 1;
+            for (int i = 0; i < last; i++) {
+                try {
+                    return steps[i].convert(sourceValue);
+                } catch (TargetTypeNotSupportedException e) {
+                    // FALLTHROUGH
+                }
+            }
+            if (last >= 0) {
+                try {
+                    return steps[last].convert(sourceValue);
+                } catch (TargetTypeNotSupportedException e) {
+                    if (lastStepIsFinal) {
+                        throw e;
+                    }
+                }
+            }
+            throw new TargetTypeNotSupportedException(sourceValue, targetType);
+        }
+    }
+
+    private interface Step {
+        Object convert(String sourceValue) throws TargetTypeNotSupportedException, InvalidSourceValueException;
+
+        /**
+         * Whether the same source value always gives an equal immutable value.
+         */
+        boolean isCacheable();
+    }
+
+    private static class ConverterStep implements Step {
+        private final Converter converter;
+        private final Class<?> targetType;
+        private final boolean cacheable;
+
+        public ConverterStep(Converter converter, Class<?> targetType, boolean cacheable) {
+            this.converter = converter;
+            this.targetType = targetType;
+            this.cacheable = cacheable;
+        }
+
+        public boolean isCacheable() {
+            return cacheable;
+        }
+
+        public Object convert(String sourceValue) throws TargetTypeNotSupportedException, InvalidSourceValueException {
+            return checkResult(converter.valueOf(sourceValue, targetType), sourceValue, targetType);
+        }
+    }
+
+    private static class DelegatingStep implements Step {
+        private final Conversion delegate;
+        private final Class<?> targetType;
+
+        /**
+         * @param targetType the type which the result is checked against, or null to not check it.
+         */
+        public DelegatingStep(Conversion delegate, Class<?> targetType) {
+            this.delegate = delegate;
+            this.targetType = targetType;
+        }
+
+        public boolean isCacheable() {
+            return delegate.cacheable;
+        }
+
+        public Object convert(String sourceValue) throws TargetTypeNotSupportedException, InvalidSourceValueException {
+            Object o = delegate.convert(sourceValue);
+            return (targetType != null) ? checkResult(o, sourceValue, targetType) : o;
+        }
+    }
+
+    private static class ProviderStep implements Step {
+        private final ConverterProvider provider;
+        private final Class<?> targetType;
+
+        public ProviderStep(ConverterProvider provider, Class<?> targetType) {
+            this.provider = provider;
+            this.targetType = targetType;
+        }
+
+        public boolean isCacheable() {
+            return false;
+        }
+
+        public Object convert(String sourceValue) throws TargetTypeNotSupportedException, InvalidSourceValueException {
+            return provider.valueOf(sourceValue, targetType);
         }
-        throw new TargetTypeNotSupportedException(sourceValue, targetType);
     }
 
     private static final Map<Class<?>, Class<?>> wrapperTypes;
@@ -151,4 +456,55 @@ public class ConverterProvider implements ConversionService {
         Class<?> wrapperType = wrapperTypes.get(toPrimitiveType);
         return (wrapperType != null && wrapperType.equals(fromWrapperType));
     }
+
+    static Class<?> wrapperTypeOf(Class<?> primitiveType) {
+        return wrapperTypes.get(primitiveType);
+    }
+
+    private static class ValueCache {
+
+        private final int maxSizePerType;
+        private final int modCount;
+        private final ConcurrentMap<Class<?>, TypeCache> cachesByType = new ConcurrentHashMap<Class<?>, TypeCache>();
+
+        public ValueCache(int maxSizePerType, int modCount) {
+            this.maxSizePerType = maxSizePerType;
+            this.modCount = modCount;
+        }
+
+        private TypeCache cacheOf(Class<?> targetType) {
+            TypeCache cache = cachesByType.get(targetType);
+            if (cache == null) {
+                cachesByType.putIfAbsent(targetType, new TypeCache(maxSizePerType));
+                cache = cachesByType.get(targetType);
+            }
+            return cache;
+        }
+
+        public Object get(Class<?> targetType, String sourceValue) {
+            TypeCache cache = cacheOf(targetType);
+            Object value = cache.values.get(sourceValue);
+            if (value != null) {
+                cache.hits.increment();
+            } else {
+                cache.misses.increment();
+            }
+            return value;
+        }
+
+        public void put(Class<?> targetType, String sourceValue, Object value) {
+            TypeCache cache = cacheOf(targetType);
+            cache.values.put(sourceValue, value);
+        }
+    }
+
+    private static class TypeCache {
+        final ConcurrentLruMap<String, Object> values;
+        final StripedCounter hits = new StripedCounter();
+        final StripedCounter misses = new StripedCounter();
+
+        public TypeCache(int maxSize) {
+            values = new ConcurrentLruMap<String, Object>(maxSize);
+        }
+    }
 }
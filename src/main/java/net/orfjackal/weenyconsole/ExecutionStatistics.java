@@ -0,0 +1,150 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import net.orfjackal.weenyconsole.exceptions.CommandExecutionException;
+import net.orfjackal.weenyconsole.exceptions.CommandTargetException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live statistics of the commands which a {@link CommandExecuter} has executed. The statistics
+ * are updated with striped counters, so reading them never blocks the execution of commands.
+ * They are collected only when enabled with {@link CommandExecuter#setStatisticsEnabled(boolean)}.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class ExecutionStatistics {
+
+    private final StripedCounter executions = new StripedCounter();
+    private final ConcurrentMap<String, CommandStatistics> commands = new ConcurrentHashMap<String, CommandStatistics>();
+    private final ConcurrentMap<Class<?>, StripedCounter> failures = new ConcurrentHashMap<Class<?>, StripedCounter>();
+
+    void commandExecuted(CommandExecutionException failure) {
+        executions.increment();
+        if (failure != null) {
+            Class<?> type = (failure instanceof CommandTargetException)
+                    ? ((CommandTargetException) failure).getTargetException().getClass()
+                    : failure.getClass();
+            StripedCounter counter = failures.get(type);
+            if (counter == null) {
+                failures.putIfAbsent(type, new StripedCounter());
+                counter = failures.get(type);
+            }
+            counter.increment();
+        }
+    }
+
+    void methodInvoked(String methodName, long durationNanos, boolean succeeded) {
+        CommandStatistics stats = commands.get(methodName);
+        if (stats == null) {
+            commands.putIfAbsent(methodName, new CommandStatistics(methodName));
+            stats = commands.get(methodName);
+        }
+        stats.record(durationNanos, succeeded);
+    }
+
+    /**
+     * The number of commands executed, including the ones which failed.
+     */
+    public long executions() {
+        return executions.sum();
+    }
+
+    /**
+     * The number of failed commands by the type of the exception. When the target method
+     * threw the exception, its type is used instead of {@link CommandTargetException}.
+     */
+    public Map<Class<?>, Long> failuresByType() {
+        Map<Class<?>, Long> result = new HashMap<Class<?>, Long>();
+        for (Map.Entry<Class<?>, StripedCounter> entry : failures.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    /**
+     * The statistics of every method which has been invoked, in no particular order.
+     */
+    public List<CommandStatistics> commands() {
+        return new ArrayList<CommandStatistics>(commands.values());
+    }
+
+    public static class CommandStatistics {
+
+        private final String methodName;
+        private final StripedCounter calls = new StripedCounter();
+        private final StripedCounter failures = new StripedCounter();
+        private final StripedCounter totalNanos = new StripedCounter();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private CommandStatistics(String methodName) {
+            this.methodName = methodName;
+        }
+
+        private void record(long durationNanos, boolean succeeded) {
+            calls.increment();
+            if (!succeeded) {
+                failures.increment();
+            }
+            totalNanos.add(durationNanos);
+            latencies.record(durationNanos);
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public long calls() {
+            return calls.sum();
+        }
+
+        public long failures() {
+            return failures.sum();
+        }
+
+        public long totalTime(TimeUnit unit) {
+            return unit.convert(totalNanos.sum(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * An upper bound of the time which the given fraction (for example 0.99) of the calls did not
+         * exceed. Is at most 25 % higher than the exact value.
+         */
+        public long percentile(double fraction, TimeUnit unit) {
+            return unit.convert(latencies.percentile(fraction), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes the results of commands as JSON, one result per line. The results are written
+ * incrementally while they are traversed, without building the JSON as a string first.
+ * <ul>
+ * <li>the booleans and numbers of the JDK are written as JSON literals, except that
+ * NaN and the infinities, which JSON does not have, are written as JSON strings</li>
+ * <li>strings, characters, enums, other numbers and unknown types are written as JSON strings</li>
+ * <li>arrays and {@link Iterable}s are written as JSON arrays</li>
+ * <li>{@link Map}s are written as JSON objects, with the keys converted to strings</li>
+ * <li>objects with bean properties are written as JSON objects of the properties</li>
+ * </ul>
+ * The encoder of each class is found once and reused. Values nested deeper than
+ * {@link #MAX_DEPTH} are written as strings, and so are the bean properties whose type is
+ * the bean's own class, to stop at getters such as <tt>Point.getLocation()</tt>.
+ * <p/>
+ * Each thread encodes into its own reusable buffer, from which the line is written at once.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class JsonLinesEncoder {
+
+    public static final int MAX_DEPTH = 32;
+
+    private static final Set<Class<?>> LITERAL_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            Boolean.class, Integer.class, Long.class, Short.class, Byte.class, BigInteger.class, BigDecimal.class));
+
+    private final ConcurrentMap<Class<?>, ValueEncoder> encoders = new ConcurrentHashMap<Class<?>, ValueEncoder>();
+    private final ThreadLocal<LineBuffer> lineBuffers = new ThreadLocal<LineBuffer>();
+
+    public void write(Object result, OutputStream out) throws IOException {
+        LineBuffer line = encodeLine(result);
+        try {
+            out.write(line.bytes.array(), 0, line.bytes.size());
+        } finally {
+            release(line);
+        }
+    }
+
+    public void write(Object result, WritableByteChannel out) throws IOException {
+        LineBuffer line = encodeLine(result);
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(line.bytes.array(), 0, line.bytes.size());
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        } finally {
+            release(line);
+        }
+    }
+
+    private LineBuffer encodeLine(Object result) throws IOException {
+        LineBuffer line = lineBuffers.get();
+        if (line == null) {
+            line = new LineBuffer();
+        }
+        lineBuffers.remove(); // until released, so that the partial contents of a failed line are never reused
+        encode(result, line.writer, 0);
+        line.writer.write('\n');
+        line.writer.flush();
+        return line;
+    }
+
+    private void release(LineBuffer line) {
+        if (line.bytes.size() <= LineBuffer.MAX_RETAINED_SIZE) {
+            line.bytes.reset();
+            lineBuffers.set(line);
+        }
+    }
+
+    private void encode(Object value, Writer out, int depth) throws IOException {
+        if (value == null) {
+            out.write("null");
+        } else if (depth > MAX_DEPTH) {
+            writeString(String.valueOf(value), out);
+        } else {
+            encoderFor(value.getClass()).encode(value, out, depth);
+        }
+    }
+
+    private ValueEncoder encoderFor(Class<?> type) {
+        ValueEncoder encoder = encoders.get(type);
+        if (encoder == null) {
+            encoders.putIfAbsent(type, createEncoder(type));
+            encoder = encoders.get(type);
+        }
+        return encoder;
+    }
+
+    private ValueEncoder createEncoder(Class<?> type) {
+        if (type == Double.class || type == Float.class) {
+            return FLOATING_POINT;
+        }
+        if (LITERAL_TYPES.contains(type)) {
+            // always finite, and their toString() is a JSON number
+            return LITERAL;
+        }
+        if (Number.class.isAssignableFrom(type)
+                || CharSequence.class.isAssignableFrom(type) || type == Character.class || type.isEnum()
+                || (type.getSuperclass() != null && type.getSuperclass().isEnum())) {
+            return STRING;
+        }
+        if (type.isArray()) {
+            return arrayEncoder;
+        }
+        if (Iterable.class.isAssignableFrom(type)) {
+            return iterableEncoder;
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return mapEncoder;
+        }
+        ValueEncoder bean = beanEncoderFor(type);
+        return (bean != null) ? bean : STRING;
+    }
+
+    private static void writeString(String s, Writer out) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        out.write("\\u");
+                        String hex = Integer.toHexString(c);
+                        for (int pad = hex.length(); pad < 4; pad++) {
+                            out.write('0');
+                        }
+                        out.write(hex);
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    private interface ValueEncoder {
+        void encode(Object value, Writer out, int depth) throws IOException;
+    }
+
+    private static final ValueEncoder LITERAL = new ValueEncoder() {
+        public void encode(Object value, Writer out, int depth) throws IOException {
+            out.write(value.toString());
+        }
+    };
+
+    private static final ValueEncoder FLOATING_POINT = new ValueEncoder() {
+        public void encode(Object value, Writer out, int depth) throws IOException {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                writeString(value.toString(), out); // JSON has no NaN or infinity
+            } else {
+                out.write(value.toString());
+            }
+        }
+    };
+
+    private static final ValueEncoder STRING = new ValueEncoder() {
+        public void encode(Object value, Writer out, int depth) throws IOException {
+            writeString(value.toString(), out);
+        }
+    };
+
+    private final ValueEncoder arrayEncoder = new ValueEncoder() {
+        public void encode(Object value, Writer out, int depth) throws IOException {
+            out.write('[');
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                JsonLinesEncoder.this.encode(Array.get(value, i), out, depth + 1);
+            }
+            out.write(']');
+        }
+    };
+
+    private final ValueEncoder iterableEncoder = new ValueEncoder() {
+        public void encode(Object value, Writer out, int depth) throws IOException {
+            out.write('[');
+            boolean first = true;
+            for (Object element : (Iterable<?>) value) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                JsonLinesEncoder.this.encode(element, out, depth + 1);
+            }
+            out.write(']');
+        }
+    };
+
+    private final ValueEncoder mapEncoder = new ValueEncoder() {
+        public void encode(Object value, Writer out, int depth) throws IOException {
+            out.write('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                writeString(String.valueOf(entry.getKey()), out);
+                out.write(':');
+                JsonLinesEncoder.this.encode(entry.getValue(), out, depth + 1);
+            }
+            out.write('}');
+        }
+    };
+
+    private ValueEncoder beanEncoderFor(Class<?> type) {
+        BeanInfo info;
+        try {
+            info = Introspector.getBeanInfo(type, Object.class);
+        } catch (IntrospectionException e) {
+            return null;
+        }
+        List<String> names = new ArrayList<String>();
+        List<Method> getters = new ArrayList<Method>();
+        for (PropertyDescriptor property : info.getPropertyDescriptors()) {
+            Method getter = property.getReadMethod();
+            if (getter == null || getter.getReturnType() == type) {
+                continue;
+            }
+            try {
+                getter.setAccessible(true); // the class itself might not be public
+            } catch (RuntimeException e) {
+                // a SecurityException, or on Java 9+ an InaccessibleObjectException for a class of a module
+                continue;
+            }
+            names.add(property.getName());
+            getters.add(getter);
+        }
+        if (getters.isEmpty()) {
+            return null;
+        }
+        return new BeanEncoder(names.toArray(new String[names.size()]), getters.toArray(new Method[getters.size()]));
+    }
+
+    private class BeanEncoder implements ValueEncoder {
+
+        private final String[] names;
+        private final Method[] getters;
+
+        public BeanEncoder(String[] names, Method[] getters) {
+            this.names = names;
+            this.getters = getters;
+        }
+
+        public void encode(Object value, Writer out, int depth) throws IOException {
+            out.write('{');
+            for (int i = 0; i < getters.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeString(names[i], out);
+                out.write(':');
+                JsonLinesEncoder.this.encode(propertyOf(value, getters[i]), out, depth + 1);
+            }
+            out.write('}');
+        }
+
+        private Object propertyOf(Object bean, Method getter) throws IOException {
+            try {
+                return getter.invoke(bean);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e); // should never happen - the getter was made accessible
+            } catch (InvocationTargetException e) {
+                IOException ioe = new IOException("failed to read " + getter);
+                ioe.initCause(e.getTargetException());
+                throw ioe;
+            }
+        }
+    }
+
+    /**
+     * The UTF-8 bytes of a line, encoded through a writer which is reused for the next line.
+     */
+    private static class LineBuffer {
+
+        private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+        final Bytes bytes = new Bytes();
+        final Writer writer;
+
+        public LineBuffer() {
+            try {
+                writer = new BufferedWriter(new OutputStreamWriter(bytes, "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static class Bytes extends ByteArrayOutputStream {
+        public byte[] array() {
+            return buf;
+        }
+    }
+}
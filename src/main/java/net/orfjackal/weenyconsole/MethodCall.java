@@ -34,7 +34,6 @@ package net.orfjackal.weenyconsole;
 import net.orfjackal.weenyconsole.exceptions.ConversionFailedException;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 
@@ -47,29 +46,35 @@ class MethodCall {
     private final String methodName;
     private final String[] parameters;
     private final ConverterProvider provider;
+    private final ParallelConversion parallelConversion;
 
     public MethodCall(String methodName, String[] srcParameters, int srcPos, int srcLen, ConverterProvider provider) {
+        this(methodName, srcParameters, srcPos, srcLen, provider, null);
+    }
+
+    /**
+     * @param parallelConversion used for converting large vararg parameters, or null to convert them
+     *                           in the calling thread.
+     */
+    public MethodCall(String methodName, String[] srcParameters, int srcPos, int srcLen, ConverterProvider provider,
+                      ParallelConversion parallelConversion) {
         this.methodName = methodName;
         this.parameters = new String[srcLen];
         System.arraycopy(srcParameters, srcPos, this.parameters, 0, this.parameters.length);
         this.provider = provider;
+        this.parallelConversion = parallelConversion;
     }
 
-    public boolean matches(Method method) {
-        return methodHasTheRightName(method)
-                && parametersCanBeAssignedTo(method);
-    }
-
-    public Object invoke(Method method, Object methodOwner) throws IllegalAccessException, InvocationTargetException {
-        return method.invoke(methodOwner, parametersForMethod(method, parameters));
+    public String getMethodName() {
+        return methodName;
     }
 
-    private boolean methodHasTheRightName(Method method) {
-        return method.getName().equals(methodName);
-    }
-
-    private boolean parametersCanBeAssignedTo(Method method) {
-        return parametersForMethod(method, parameters) != null;
+    /**
+     * Returns the parameters converted to the parameter types of the method,
+     * or null if the parameters are not suitable for the method.
+     */
+    public Object[] parametersFor(Method method) {
+        return parametersForMethod(method, parameters);
     }
 
     private Object[] parametersForMethod(Method method, String[] srcValues) {
@@ -113,6 +118,10 @@ class MethodCall {
         // temporary arrays for varargs, so that we can call convertToType
         String[] srcValues = Arrays.copyOfRange(origSrcValues, varargsIndex, origSrcValues.length);
         Object[] destValues = (Object[]) Array.newInstance(destType, varargsCount);
+        if (parallelConversion != null && parallelConversion.isWorthwhile(varargsCount)) {
+            parallelConversion.convert(srcValues, destType, destValues, provider);
+            return destValues;
+        }
         Class<?>[] destTypes = new Class<?>[varargsCount];
         Arrays.fill(destTypes, destType);
 
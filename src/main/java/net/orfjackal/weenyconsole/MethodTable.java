@@ -0,0 +1,116 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import net.orfjackal.weenyconsole.exceptions.CommandExecutionException;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A numbered snapshot of the methods of a {@link CommandExecuter}, for clients which resolve
+ * the methods once and then execute them by their number. The numbers stay the same for the
+ * lifetime of the table, even if more targets are added to the executer.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class MethodTable {
+
+    private final CommandExecuter executer;
+    private final String[] methodNames;
+    private final CommandIndex.Overload[] overloads;
+
+    MethodTable(CommandExecuter executer, CommandIndex index) {
+        List<String> names = new ArrayList<String>();
+        List<CommandIndex.Overload> methods = new ArrayList<CommandIndex.Overload>();
+        for (String methodName : index.methodNames()) {
+            for (CommandIndex.Overload overload : index.overloadsOf(methodName)) {
+                names.add(methodName);
+                methods.add(overload);
+            }
+        }
+        this.executer = executer;
+        this.methodNames = names.toArray(new String[names.size()]);
+        this.overloads = methods.toArray(new CommandIndex.Overload[methods.size()]);
+    }
+
+    public int size() {
+        return overloads.length;
+    }
+
+    /**
+     * Returns the name of the method, including the namespace.
+     */
+    public String getMethodName(int methodId) {
+        return methodNames[methodId];
+    }
+
+    public Method getMethod(int methodId) {
+        return overloads[methodId].method;
+    }
+
+    /**
+     * Describes the method as its name and parameter types, for example
+     * <tt>"methodOne(int, java.lang.String...)"</tt>.
+     */
+    public String describe(int methodId) {
+        Method method = getMethod(methodId);
+        StringBuilder sb = new StringBuilder(getMethodName(methodId)).append('(');
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            if (i == types.length - 1 && method.isVarArgs()) {
+                sb.append(types[i].getComponentType().getName()).append("...");
+            } else {
+                sb.append(types[i].isArray() ? types[i].getComponentType().getName() + "[]" : types[i].getName());
+            }
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Executes the method with the arguments converted to its parameter types. A null argument
+     * is passed to the method as null.
+     *
+     * @throws CommandExecutionException
+     * @throws IndexOutOfBoundsException if there is no such method.
+     */
+    public Object execute(int methodId, String... args) {
+        if (methodId < 0 || methodId >= overloads.length) {
+            throw new IndexOutOfBoundsException("unknown method id: " + methodId);
+        }
+        return executer.execute(methodNames[methodId], overloads[methodId], args);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import net.orfjackal.weenyconsole.exceptions.ConversionFailedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts the elements of a large array in chunks, which the calling thread and the helper
+ * threads take in turns. Every chunk stops at its first failure, and the chunks after a failure
+ * are skipped, so the failure of the lowest index is always the one which is reported.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+class ParallelConversion {
+
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Executor executor;
+    private final int threshold;
+    private final int parallelism;
+
+    public ParallelConversion(Executor executor, int threshold, int parallelism) {
+        this.executor = executor;
+        this.threshold = threshold;
+        this.parallelism = parallelism;
+    }
+
+    public boolean isWorthwhile(int count) {
+        return parallelism > 1 && count >= threshold;
+    }
+
+    public void convert(String[] srcValues, Class<?> destType, Object[] destValues, ConverterProvider provider) throws ConversionFailedException {
+        Task task = new Task(srcValues, destType, destValues, provider);
+        for (int i = 1; i < Math.min(parallelism, task.chunkCount); i++) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                break; // the calling thread converts the rest
+            }
+        }
+        task.run();
+        task.awaitChunks();
+        task.throwFirstFailure();
+    }
+
+    private class Task implements Runnable {
+
+        private final String[] srcValues;
+        private final Class<?> destType;
+        private final Object[] destValues;
+        private final ConverterProvider provider;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final CountDownLatch chunksDone;
+        private volatile int failedIndex = Integer.MAX_VALUE;
+        private Throwable failure;
+
+        public Task(String[] srcValues, Class<?> destType, Object[] destValues, ConverterProvider provider) {
+            this.srcValues = srcValues;
+            this.destType = destType;
+            this.destValues = destValues;
+            this.provider = provider;
+            int chunks = Math.max(1, parallelism * CHUNKS_PER_THREAD);
+            this.chunkSize = Math.max(1, (srcValues.length + chunks - 1) / chunks);
+            this.chunkCount = (srcValues.length + chunkSize - 1) / chunkSize;
+            this.chunksDone = new CountDownLatch(chunkCount);
+        }
+
+        public void run() {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                try {
+                    convertChunk(chunk * chunkSize, Math.min(srcValues.length, (chunk + 1) * chunkSize));
+                } finally {
+                    chunksDone.countDown();
+                }
+            }
+        }
+
+        private void convertChunk(int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (i > failedIndex) {
+                    return;
+                }
+                try {
+                    destValues[i] = provider.valueOf(srcValues[i], destType);
+                } catch (Throwable t) {
+                    failed(i, t);
+                    return;
+                }
+            }
+        }
+
+        private synchronized void failed(int index, Throwable t) {
+            if (index < failedIndex) {
+                failedIndex = index;
+                failure = t;
+            }
+        }
+
+        public void awaitChunks() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    chunksDone.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public synchronized void throwFirstFailure() throws ConversionFailedException {
+            if (failure instanceof ConversionFailedException) {
+                throw (ConversionFailedException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
+    }
+}
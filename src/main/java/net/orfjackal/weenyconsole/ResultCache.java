@@ -0,0 +1,174 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of {@link Cacheable} methods, keyed by the target, the method and its converted parameters.
+ * When the cache is full, the expired results are evicted first and then the least recently used ones.
+ * Looking up results does not lock the cache.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class ResultCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final ConcurrentLruMap<Key, CachedResult> entries;
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+
+    ResultCache(int maxSize) {
+        entries = new ConcurrentLruMap<Key, CachedResult>(maxSize) {
+            protected boolean isStale(CachedResult value, long now) {
+                return value.isExpired(now);
+            }
+        };
+    }
+
+    /**
+     * The key of the method's result. The key uses the parameter array as is,
+     * so it must be {@link Key#copy copied} before the method may modify the array.
+     */
+    static Key keyFor(Object target, Method method, Object[] parameters) {
+        return new Key(target, method, parameters);
+    }
+
+    /**
+     * Returns the cached result wrapped in a one-element array (the result itself
+     * may be null), or null if there is no result which has not yet expired.
+     */
+    Object[] get(Key key) {
+        CachedResult entry = entries.get(key);
+        if (entry != null && entry.isExpired(System.nanoTime())) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new Object[]{entry.result};
+    }
+
+    void put(Key key, Object result, long timeToLiveMillis) {
+        long expires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+        entries.put(key, new CachedResult(result, expires));
+    }
+
+    private static Object[] deepCopyOf(Object[] array) {
+        Object[] copy = array.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] instanceof Object[]) {
+                copy[i] = deepCopyOf((Object[]) copy[i]);
+            } else if (copy[i] != null && copy[i].getClass().isArray()) {
+                int length = Array.getLength(copy[i]);
+                Object primitives = Array.newInstance(copy[i].getClass().getComponentType(), length);
+                System.arraycopy(copy[i], 0, primitives, 0, length);
+                copy[i] = primitives;
+            }
+        }
+        return copy;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    static class Key {
+
+        private final Object target;
+        private final Method method;
+        private final Object[] parameters;
+        private final int hashCode;
+
+        public Key(Object target, Method method, Object[] parameters) {
+            this.target = target;
+            this.method = method;
+            this.parameters = parameters;
+            this.hashCode = 31 * (31 * System.identityHashCode(target) + method.hashCode()) + Arrays.deepHashCode(parameters);
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return target == other.target
+                    && method.equals(other.method)
+                    && Arrays.deepEquals(parameters, other.parameters);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /**
+         * Copies the parameters, because the method may modify its vararg array.
+         */
+        public Key copy() {
+            return new Key(target, method, deepCopyOf(parameters));
+        }
+    }
+
+    private static class CachedResult {
+
+        public final Object result;
+        private final long expires;
+
+        public CachedResult(Object result, long expires) {
+            this.result = result;
+            this.expires = expires;
+        }
+
+        public boolean isExpired(long now) {
+            return now - expires >= 0;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import net.orfjackal.weenyconsole.exceptions.CommandExecutionException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes a script of commands, one command per line. Empty lines and lines starting with
+ * <tt>#</tt> are skipped. With a parallelism greater than one, the independent commands are
+ * executed concurrently:
+ * <ul>
+ * <li>a line starting with <tt>&amp;</tt> is an independent command</li>
+ * <li>the lines between <tt>{</tt> and <tt>}</tt>, each on a line of its own, are independent commands</li>
+ * <li>a command whose methods are all annotated {@link ThreadSafe} is independent</li>
+ * </ul>
+ * The other commands are executed in order: they wait for the preceding commands to finish,
+ * and the following commands wait for them. A line <tt>--</tt>, and the start and end of a block,
+ * wait for the preceding commands to finish without executing anything. These markers are not
+ * valid command words, so they cannot hide a command of the target. The results are returned
+ * in the order of the lines, and a failing command does not stop the script.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class ScriptExecuter {
+
+    private static final String INDEPENDENT_PREFIX = "&";
+    private static final String BLOCK_START = "{";
+    private static final String BLOCK_END = "}";
+    private static final String BARRIER = "--";
+
+    private final CommandExecuter executer;
+    private volatile int parallelism = 1;
+
+    public ScriptExecuter(CommandExecuter executer) {
+        this.executer = executer;
+    }
+
+    /**
+     * How many independent commands may be executed at the same time. The default is one,
+     * which executes the whole script in order.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public List<LineResult> execute(Reader script) throws IOException {
+        int parallelism = this.parallelism;
+        ExecutorService pool = (parallelism > 1) ? Executors.newFixedThreadPool(parallelism, new ScriptThreadFactory()) : null;
+        try {
+            return execute(new BufferedReader(script), pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private List<LineResult> execute(BufferedReader script, ExecutorService pool) throws IOException {
+        List<LineResult> results = new ArrayList<LineResult>();
+        List<Future<?>> running = new ArrayList<Future<?>>();
+        boolean inBlock = false;
+        int lineNumber = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            String command = line.trim();
+            if (command.length() == 0 || command.startsWith("#")) {
+                continue;
+            }
+            if (command.equals(BLOCK_START) || command.equals(BLOCK_END) || command.equals(BARRIER)) {
+                if (!command.equals(BARRIER)) {
+                    inBlock = command.equals(BLOCK_START);
+                }
+                awaitAll(running);
+                continue;
+            }
+            boolean independent = inBlock || command.startsWith(INDEPENDENT_PREFIX);
+            if (command.startsWith(INDEPENDENT_PREFIX)) {
+                command = command.substring(INDEPENDENT_PREFIX.length()).trim();
+            }
+            LineResult result = new LineResult(lineNumber, command);
+            results.add(result);
+            if (pool != null && (independent || executer.isThreadSafe(command))) {
+                running.add(pool.submit(result));
+            } else {
+                awaitAll(running);
+                result.run();
+            }
+        }
+        awaitAll(running);
+        return results;
+    }
+
+    private static void awaitAll(List<Future<?>> running) {
+        boolean interrupted = false;
+        for (Future<?> future : running) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause()); // should never happen - LineResult catches the failures
+                }
+            }
+        }
+        running.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public class LineResult implements Runnable {
+
+        private final int lineNumber;
+        private final String command;
+        private volatile Object result;
+        private volatile CommandExecutionException failure;
+
+        private LineResult(int lineNumber, String command) {
+            this.lineNumber = lineNumber;
+            this.command = command;
+        }
+
+        public void run() {
+            try {
+                result = executer.execute(command);
+            } catch (CommandExecutionException e) {
+                failure = e;
+            }
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public Object getResult() {
+            return result;
+        }
+
+        /**
+         * @return null if the command succeeded.
+         */
+        public CommandExecutionException getFailure() {
+            return failure;
+        }
+
+        public String toString() {
+            return lineNumber + ": " + command + " => " + (failure != null ? failure.getMessage() : result);
+        }
+    }
+
+    private static class ScriptThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadNumber = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ScriptExecuter-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
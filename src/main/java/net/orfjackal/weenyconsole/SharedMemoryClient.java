@@ -0,0 +1,124 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends commands to a {@link SharedMemoryServer} in another process on the same host.
+ * The server must have been started before connecting. Only one client may use the
+ * same file at a time, but the client may be shared by many threads.
+ * <p/>
+ * The client stops waiting when the server is closed, but it cannot notice a server
+ * process which died, so use a timeout if that may happen.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class SharedMemoryClient {
+
+    private final WaitStrategy waitStrategy;
+    private final SharedMemoryRing requests;
+    private final SharedMemoryRing responses;
+    private final MappedByteBuffer buffer;
+    private boolean broken = false;
+
+    public SharedMemoryClient(File file, WaitStrategy waitStrategy) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("the server has not been started: " + file);
+        }
+        this.waitStrategy = waitStrategy;
+        MappedByteBuffer header = SharedMemoryServer.map(file, 8);
+        int capacity = SharedMemoryServer.capacityOf(header);
+        buffer = SharedMemoryServer.map(file, SharedMemoryServer.sizeOf(capacity));
+        requests = SharedMemoryServer.requestsRing(buffer, capacity);
+        responses = SharedMemoryServer.responsesRing(buffer, capacity);
+    }
+
+    /**
+     * Executes the command and waits for its result, converted to a string.
+     * Returns null if the result was null.
+     *
+     * @throws IOException with the error message if the command failed.
+     */
+    public String execute(String command) throws IOException {
+        return execute(command, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Same as {@link #execute(String)}, but waits at most the given time. After a timeout the
+     * response of the command could still arrive in place of the next one, so the client
+     * cannot be used any more.
+     *
+     * @throws IOException also if the server was closed or the command timed out.
+     */
+    public synchronized String execute(String command, long timeout, TimeUnit unit) throws IOException {
+        if (broken) {
+            throw new IOException("an earlier command timed out");
+        }
+        long start = System.nanoTime();
+        long timeoutNanos = unit.toNanos(timeout);
+        byte[] request = SharedMemoryServer.utf8(command);
+        while (!requests.offer(request)) {
+            checkAlive(command, start, timeoutNanos);
+            waitStrategy.idle();
+        }
+        byte[] response;
+        while ((response = responses.poll()) == null) {
+            checkAlive(command, start, timeoutNanos);
+            waitStrategy.idle();
+        }
+        String text = SharedMemoryServer.utf8(Arrays.copyOfRange(response, 1, response.length));
+        switch (response[0]) {
+            case SharedMemoryServer.OK:
+                return text;
+            case SharedMemoryServer.NULL_RESULT:
+                return null;
+            default:
+                throw new IOException(text);
+        }
+    }
+
+    private void checkAlive(String command, long start, long timeoutNanos) throws IOException {
+        if (SharedMemoryServer.isClosed(buffer)) {
+            broken = true;
+            throw new IOException("the server was closed: " + command);
+        }
+        if (System.nanoTime() - start >= timeoutNanos) {
+            broken = true;
+            throw new IOException("timed out: " + command);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * A single-producer single-consumer ring buffer of byte records in a memory-mapped file, which
+ * may be shared between processes. The producer and the consumer keep their positions in the
+ * header of the ring: first the data is written, then the position is moved past it.
+ * <p/>
+ * The positions are read and written with the ordered memory accesses of {@link Unsafe} directly
+ * in the mapped memory, because the plain accesses of {@link ByteBuffer} may be reordered with
+ * the accesses to the data. The buffer must be a direct buffer, and the header must be aligned
+ * to 8 bytes from the start of the buffer.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+class SharedMemoryRing {
+
+    // the positions are on different cache lines
+    private static final int WRITE_POSITION = 0;
+    private static final int READ_POSITION = 64;
+    static final int HEADER_SIZE = 128;
+    private static final int LENGTH_SIZE = 4;
+
+    private static final Unsafe UNSAFE;
+    private static final long ADDRESS_OFFSET;
+
+    static {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = (Unsafe) field.get(null);
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ByteBuffer buffer;
+    // the producer and the consumer may be different threads, so they do not share a view
+    private final ByteBuffer producerView;
+    private final ByteBuffer consumerView;
+    private final long writePositionAddress;
+    private final long readPositionAddress;
+    private final int dataStart;
+    private final int capacity;
+
+    /**
+     * @param base the offset of the ring's header in the buffer. The data follows the header.
+     */
+    public SharedMemoryRing(ByteBuffer buffer, int base, int capacity) {
+        this.buffer = buffer;
+        this.producerView = buffer.duplicate();
+        this.consumerView = buffer.duplicate();
+        if (!buffer.isDirect() || base % 8 != 0) {
+            throw new IllegalArgumentException("the ring must be in a direct buffer and aligned to 8 bytes");
+        }
+        long address = UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+        this.writePositionAddress = address + base + WRITE_POSITION;
+        this.readPositionAddress = address + base + READ_POSITION;
+        this.dataStart = base + HEADER_SIZE;
+        this.capacity = capacity;
+    }
+
+    public void clear() {
+        UNSAFE.putLongVolatile(null, writePositionAddress, 0);
+        UNSAFE.putLongVolatile(null, readPositionAddress, 0);
+    }
+
+    public int maxRecordSize() {
+        return capacity - LENGTH_SIZE;
+    }
+
+    /**
+     * Called only by the producer. Returns false if there is not enough room for the record.
+     */
+    public boolean offer(byte[] record) {
+        if (record.length > maxRecordSize()) {
+            throw new IllegalArgumentException("record of " + record.length + " bytes does not fit in " + capacity + " bytes");
+        }
+        long write = UNSAFE.getLongVolatile(null, writePositionAddress);
+        long read = UNSAFE.getLongVolatile(null, readPositionAddress); // acquire: the consumer is done with the data
+        if (capacity - (write - read) < LENGTH_SIZE + record.length) {
+            return false;
+        }
+        putLength(write, record.length);
+        put(write + LENGTH_SIZE, record);
+        UNSAFE.putOrderedLong(null, writePositionAddress, write + LENGTH_SIZE + record.length); // release: the data is written first
+        return true;
+    }
+
+    /**
+     * Called only by the consumer. Returns null if there are no records.
+     */
+    public byte[] poll() {
+        long read = UNSAFE.getLongVolatile(null, readPositionAddress);
+        long write = UNSAFE.getLongVolatile(null, writePositionAddress); // acquire: see the data of the position
+        if (write == read) {
+            return null;
+        }
+        byte[] record = new byte[getLength(read)];
+        get(read + LENGTH_SIZE, record);
+        UNSAFE.putOrderedLong(null, readPositionAddress, read + LENGTH_SIZE + record.length); // release: the data is read first
+        return record;
+    }
+
+    private void putLength(long position, int length) {
+        for (int i = 0; i < LENGTH_SIZE; i++) {
+            buffer.put(dataStart + (int) ((position + i) % capacity), (byte) (length >>> (24 - 8 * i)));
+        }
+    }
+
+    private int getLength(long position) {
+        int length = 0;
+        for (int i = 0; i < LENGTH_SIZE; i++) {
+            length = (length << 8) | (buffer.get(dataStart + (int) ((position + i) % capacity)) & 0xff);
+        }
+        return length;
+    }
+
+    private void put(long position, byte[] bytes) {
+        ByteBuffer b = producerView;
+        int offset = (int) (position % capacity);
+        int first = Math.min(bytes.length, capacity - offset);
+        b.position(dataStart + offset);
+        b.put(bytes, 0, first);
+        b.position(dataStart);
+        b.put(bytes, first, bytes.length - first);
+    }
+
+    private void get(long position, byte[] bytes) {
+        ByteBuffer b = consumerView;
+        int offset = (int) (position % capacity);
+        int first = Math.min(bytes.length, capacity - offset);
+        b.position(dataStart + offset);
+        b.get(bytes, 0, first);
+        b.position(dataStart);
+        b.get(bytes, first, bytes.length - first);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import net.orfjackal.weenyconsole.exceptions.CommandExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Executes the commands of a {@link SharedMemoryClient} in another process on the same host,
+ * through two ring buffers in a memory-mapped file: one for the requests and one for the
+ * responses. A request is a command as UTF-8, and a response is a status byte followed by
+ * the result converted to a string, or the error message. A result which does not fit in the
+ * ring buffer is reported as an error. When the server is closed, it clears the magic number
+ * of the file, so that the client stops waiting for a response.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class SharedMemoryServer {
+
+    public static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+    static final int MAGIC = 0x57434d31;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int FILE_HEADER_SIZE = 64;
+
+    static final byte OK = 0;
+    static final byte NULL_RESULT = 1;
+    static final byte ERROR = 2;
+
+    private final CommandExecuter executer;
+    private final WaitStrategy waitStrategy;
+    private final SharedMemoryRing requests;
+    private final SharedMemoryRing responses;
+    private final MappedByteBuffer buffer;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    public SharedMemoryServer(CommandExecuter executer, File file, WaitStrategy waitStrategy) throws IOException {
+        this(executer, file, DEFAULT_CAPACITY, waitStrategy);
+    }
+
+    /**
+     * Creates the file, or overwrites it if it exists, and starts serving the client.
+     *
+     * @param capacity the size of each ring buffer in bytes, rounded up to a multiple of 64,
+     *                 so that the positions of the second ring are aligned.
+     */
+    public SharedMemoryServer(CommandExecuter executer, File file, int capacity, WaitStrategy waitStrategy) throws IOException {
+        capacity = (capacity + 63) & ~63;
+        this.executer = executer;
+        this.waitStrategy = waitStrategy;
+        buffer = map(file, sizeOf(capacity));
+        buffer.putInt(MAGIC_OFFSET, 0);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        requests = requestsRing(buffer, capacity);
+        responses = responsesRing(buffer, capacity);
+        requests.clear();
+        responses.clear();
+        buffer.force();
+        buffer.putInt(MAGIC_OFFSET, MAGIC); // the client may connect only after everything else is written
+        thread = new Thread(new Runnable() {
+            public void run() {
+                serve();
+            }
+        }, "SharedMemoryServer-" + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static MappedByteBuffer map(File file, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close(); // the mapping stays valid
+        }
+    }
+
+    static int capacityOf(MappedByteBuffer buffer) throws IOException {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("the server has not been started");
+        }
+        return buffer.getInt(CAPACITY_OFFSET);
+    }
+
+    static long sizeOf(int capacity) {
+        return FILE_HEADER_SIZE + 2L * (SharedMemoryRing.HEADER_SIZE + capacity);
+    }
+
+    static SharedMemoryRing requestsRing(MappedByteBuffer buffer, int capacity) {
+        return new SharedMemoryRing(buffer, FILE_HEADER_SIZE, capacity);
+    }
+
+    static SharedMemoryRing responsesRing(MappedByteBuffer buffer, int capacity) {
+        return new SharedMemoryRing(buffer, FILE_HEADER_SIZE + SharedMemoryRing.HEADER_SIZE + capacity, capacity);
+    }
+
+    /**
+     * Stops serving the client after the current command.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        thread.join();
+        buffer.putInt(MAGIC_OFFSET, 0);
+    }
+
+    static boolean isClosed(MappedByteBuffer buffer) {
+        return buffer.getInt(MAGIC_OFFSET) != MAGIC;
+    }
+
+    private void serve() {
+        while (!closed) {
+            byte[] request = requests.poll();
+            if (request == null) {
+                waitStrategy.idle();
+                continue;
+            }
+            byte[] response = responseTo(utf8(request));
+            while (!responses.offer(response)) {
+                if (closed) {
+                    return;
+                }
+                waitStrategy.idle();
+            }
+        }
+    }
+
+    private byte[] responseTo(String command) {
+        byte status;
+        String text;
+        try {
+            Object result = executer.execute(command);
+            status = (result != null) ? OK : NULL_RESULT;
+            text = (result != null) ? String.valueOf(result) : "";
+        } catch (CommandExecutionException e) {
+            status = ERROR;
+            text = e.getMessage();
+        }
+        byte[] bytes = utf8(text);
+        if (1 + bytes.length > responses.maxRecordSize()) {
+            // cutting the text could split a character, and the client could not tell it apart from a whole result
+            status = ERROR;
+            bytes = utf8("the result of " + bytes.length + " bytes does not fit in the response buffer of "
+                    + responses.maxRecordSize() + " bytes");
+            bytes = Arrays.copyOf(bytes, Math.min(bytes.length, responses.maxRecordSize() - 1)); // ASCII
+        }
+        byte[] response = new byte[1 + bytes.length];
+        response[0] = status;
+        System.arraycopy(bytes, 0, response, 1, bytes.length);
+        return response;
+    }
+
+    static String utf8(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
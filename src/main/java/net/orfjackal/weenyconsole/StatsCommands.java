@@ -0,0 +1,175 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import net.orfjackal.weenyconsole.ExecutionStatistics.CommandStatistics;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the {@link ExecutionStatistics} of a {@link CommandExecuter} in the console. Can be added
+ * to the executer as a target of its own, for example in the namespace <tt>"stats"</tt>, after which
+ * the commands are <tt>"stats top calls 10"</tt>, <tt>"stats failures"</tt> and so on.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class StatsCommands implements CommandService {
+
+    private static final double PERCENTILE = 0.99;
+
+    private final CommandExecuter executer;
+
+    /**
+     * Enables collecting the statistics in the executer.
+     */
+    public StatsCommands(CommandExecuter executer) {
+        this.executer = executer;
+        executer.setStatisticsEnabled(true);
+    }
+
+    /**
+     * Lists the commands which have been called the most times.
+     */
+    public String topCalls(int count) {
+        return top(count, new Comparator<Row>() {
+            public int compare(Row r1, Row r2) {
+                return compareDescending(r1.calls, r2.calls);
+            }
+        });
+    }
+
+    /**
+     * Lists the commands which have taken the most time in total.
+     */
+    public String topTime(int count) {
+        return top(count, new Comparator<Row>() {
+            public int compare(Row r1, Row r2) {
+                return compareDescending(r1.totalNanos, r2.totalNanos);
+            }
+        });
+    }
+
+    /**
+     * Lists the commands with the highest 99th percentile latency.
+     */
+    public String topLatency(int count) {
+        return top(count, new Comparator<Row>() {
+            public int compare(Row r1, Row r2) {
+                return compareDescending(r1.percentileNanos, r2.percentileNanos);
+            }
+        });
+    }
+
+    /**
+     * Lists the types of the exceptions which have made the commands fail,
+     * with their share of all executed commands.
+     */
+    public String failures() {
+        long executions = executer.getStatistics().executions();
+        Map<String, Long> byName = new TreeMap<String, Long>();
+        for (Map.Entry<Class<?>, Long> entry : executer.getStatistics().failuresByType().entrySet()) {
+            byName.put(entry.getKey().getName(), entry.getValue());
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : byName.entrySet()) {
+            sb.append(String.format(Locale.ENGLISH, "%s: %d failures, %.1f %%%n",
+                    entry.getKey(), entry.getValue(), percentage(entry.getValue(), executions)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Lists how often the converted values were found in the value cache,
+     * by target type. See {@link CommandExecuter#setValueCacheSize(int)}.
+     */
+    public String converters() {
+        ConverterProvider provider = executer.converterProvider();
+        Map<String, Class<?>> byName = new TreeMap<String, Class<?>>();
+        for (Class<?> type : provider.valueCacheTypes()) {
+            byName.put(type.getName(), type);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Class<?>> entry : byName.entrySet()) {
+            long hits = provider.valueCacheHits(entry.getValue());
+            long misses = provider.valueCacheMisses(entry.getValue());
+            sb.append(String.format(Locale.ENGLISH, "%s: %d hits, %d misses, %.1f %% hit rate%n",
+                    entry.getKey(), hits, misses, percentage(hits, hits + misses)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The statistics change while they are sorted, so they are read only once, into rows.
+     */
+    private String top(int count, Comparator<Row> order) {
+        List<Row> rows = new ArrayList<Row>();
+        for (CommandStatistics command : executer.getStatistics().commands()) {
+            rows.add(new Row(command));
+        }
+        Collections.sort(rows, order);
+        StringBuilder sb = new StringBuilder();
+        for (Row row : rows.subList(0, Math.min(count, rows.size()))) {
+            sb.append(String.format(Locale.ENGLISH, "%s: %d calls, %d failures, %d ms total, %d us p99%n",
+                    CommandIndex.spellingOf(row.methodName),
+                    row.calls,
+                    row.failures,
+                    TimeUnit.NANOSECONDS.toMillis(row.totalNanos),
+                    TimeUnit.NANOSECONDS.toMicros(row.percentileNanos)));
+        }
+        return sb.toString();
+    }
+
+    private static class Row {
+        final String methodName;
+        final long calls;
+        final long failures;
+        final long totalNanos;
+        final long percentileNanos;
+
+        public Row(CommandStatistics command) {
+            methodName = command.getMethodName();
+            calls = command.calls();
+            failures = command.failures();
+            totalNanos = command.totalTime(TimeUnit.NANOSECONDS);
+            percentileNanos = command.percentile(PERCENTILE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static int compareDescending(long a, long b) {
+        return (a > b) ? -1 : (a < b) ? 1 : 0;
+    }
+
+    private static double percentage(long part, long whole) {
+        return (whole > 0) ? 100.0 * part / whole : 0.0;
+    }
+}
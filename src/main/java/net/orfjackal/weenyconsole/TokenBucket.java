@@ -0,0 +1,97 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.orfjackal.weenyconsole;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket, implemented as the generic cell rate algorithm: instead of
+ * the number of tokens, it keeps the time when the bucket will be full again.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class TokenBucket {
+
+    private final long nanosPerPermit;
+    private final long burstNanos;
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong rejections = new AtomicLong();
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1: " + burst);
+        }
+        this.nanosPerPermit = Math.max(1, (long) (1000000000.0 / permitsPerSecond));
+        this.burstNanos = nanosPerPermit * burst;
+    }
+
+    /**
+     * Takes a token if one is available. Never blocks.
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long previous = fullAt.get();
+            long start = (previous == Long.MIN_VALUE || previous - now < 0) ? now : previous;
+            long next = start + nanosPerPermit;
+            if (next - now > burstNanos) {
+                rejections.incrementAndGet();
+                return false;
+            }
+            if (fullAt.compareAndSet(previous, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Tells whether {@link #tryAcquire()} would now take a token, without taking it.
+     * A false answer counts as a rejection.
+     */
+    public boolean hasToken() {
+        long now = System.nanoTime();
+        long previous = fullAt.get();
+        long start = (previous == Long.MIN_VALUE || previous - now < 0) ? now : previous;
+        if (start + nanosPerPermit - now > burstNanos) {
+            rejections.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public long rejections() {
+        return rejections.get();
+    }
+}
@@ -66,6 +66,10 @@ public class DelegatingConverter implements Converter {
         return delegateFrom;
     }
 
+    public Class<?> getDelegateTo() {
+        return delegateTo;
+    }
+
     public void setProvider(ConversionService provider) {
         this.provider = provider;
     }
@@ -0,0 +1,180 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole.converters;
+
+import net.orfjackal.weenyconsole.ConversionService;
+import net.orfjackal.weenyconsole.Converter;
+import net.orfjackal.weenyconsole.exceptions.InvalidSourceValueException;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+/**
+ * Converts IPv4 and IPv6 address literals, such as <tt>"127.0.0.1"</tt> and <tt>"::1"</tt>.
+ * Host names are not accepted, because resolving them would block the command on DNS.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class InetAddressConverter implements Converter {
+
+    public Object valueOf(String sourceValue, Class<?> targetType) throws InvalidSourceValueException {
+        byte[] address = (sourceValue.indexOf(':') >= 0) ? parseIPv6(sourceValue) : parseIPv4(sourceValue);
+        if (address == null) {
+            throw new InvalidSourceValueException(sourceValue, targetType);
+        }
+        InetAddress result;
+        try {
+            result = InetAddress.getByAddress(address);
+        } catch (UnknownHostException e) {
+            throw new InvalidSourceValueException(sourceValue, targetType, e);
+        }
+        if (!targetType.isInstance(result)) {
+            // for example an IPv6 literal when an Inet4Address was asked for
+            throw new InvalidSourceValueException(sourceValue, targetType);
+        }
+        return result;
+    }
+
+    private static byte[] parseIPv4(String s) {
+        byte[] bytes = new byte[4];
+        return parseIPv4(s, 0, bytes, 0) ? bytes : null;
+    }
+
+    private static boolean parseIPv4(String s, int start, byte[] bytes, int offset) {
+        int i = start;
+        for (int part = 0; part < 4; part++) {
+            if (part > 0) {
+                if (i >= s.length() || s.charAt(i) != '.') {
+                    return false;
+                }
+                i++;
+            }
+            int value = 0;
+            int digits = 0;
+            while (i < s.length() && digits < 3 && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                value = value * 10 + (s.charAt(i) - '0');
+                digits++;
+                i++;
+            }
+            if (digits == 0 || value > 255) {
+                return false;
+            }
+            bytes[offset + part] = (byte) value;
+        }
+        return i == s.length();
+    }
+
+    private static byte[] parseIPv6(String s) {
+        byte[] bytes = new byte[16];
+        int length = 0;
+        int compressedAt = -1;
+        int i = 0;
+        if (s.startsWith("::")) {
+            compressedAt = 0;
+            i = 2;
+        }
+        while (i < s.length()) {
+            int groupEnd = s.indexOf(':', i);
+            if (groupEnd < 0) {
+                groupEnd = s.length();
+                if (s.indexOf('.', i) >= 0) {
+                    // the last 32 bits may be written like an IPv4 address
+                    if (length > 12 || !parseIPv4(s, i, bytes, length)) {
+                        return null;
+                    }
+                    length += 4;
+                    break;
+                }
+            }
+            if (length == 16 || groupEnd - i < 1 || groupEnd - i > 4) {
+                return null;
+            }
+            int value = 0;
+            for (int j = i; j < groupEnd; j++) {
+                int digit = hexDigit(s.charAt(j));
+                if (digit < 0) {
+                    return null;
+                }
+                value = value * 16 + digit;
+            }
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+            i = groupEnd + 1;
+            if (i == s.length()) {
+                return null;
+            }
+            if (i < s.length() && s.charAt(i) == ':') {
+                if (compressedAt >= 0) {
+                    return null;
+                }
+                compressedAt = length;
+                i++;
+            }
+        }
+        if (compressedAt >= 0) {
+            if (length == 16) {
+                return null;
+            }
+            int tail = length - compressedAt;
+            System.arraycopy(bytes, compressedAt, bytes, 16 - tail, tail);
+            Arrays.fill(bytes, compressedAt, 16 - tail, (byte) 0);
+        } else if (length != 16) {
+            return null;
+        }
+        return bytes;
+    }
+
+    public Class<?> supportedTargetType() {
+        return InetAddress.class;
+    }
+
+    public void setProvider(ConversionService provider) {
+    }
+
+    /**
+     * Unlike {@link Character#digit(char, int)}, accepts only the ASCII digits.
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
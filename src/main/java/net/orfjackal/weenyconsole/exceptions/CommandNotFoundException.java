@@ -31,17 +31,48 @@
 
 package net.orfjackal.weenyconsole.exceptions;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author Esko Luontola
  * @since 31.7.2007
  */
 public class CommandNotFoundException extends CommandExecutionException {
 
+    private final transient SuggestionSource source;
+    private transient List<String> suggestions;
+
     public CommandNotFoundException(String command) {
+        this(command, null);
+    }
+
+    /**
+     * @param source finds the suggestions when they are first asked for, or null if there are none
+     */
+    public CommandNotFoundException(String command, SuggestionSource source) {
         super(command, messageFor(command));
+        this.source = source;
     }
 
     private static String messageFor(String command) {
         return "command not found: " + command;
     }
+
+    /**
+     * Returns the commands which the user might have meant, the most likely first.
+     */
+    public synchronized List<String> getSuggestions() {
+        if (suggestions == null) {
+            suggestions = (source != null)
+                    ? Collections.unmodifiableList(source.suggestionsFor(getCommand()))
+                    : Collections.<String>emptyList();
+        }
+        return suggestions;
+    }
+
+    public interface SuggestionSource {
+
+        List<String> suggestionsFor(String command);
+    }
 }
@@ -38,6 +38,16 @@ import net.orfjackal.weenyconsole.exceptions.*;
 import org.junit.runner.RunWith;
 
 import java.awt.*;
+import java.io.*;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Esko Luontola
@@ -176,6 +186,19 @@ public class CommandExecuterSpec extends Specification<Object> {
             specify(target.fooParameter, should.equal(null));
         }
 
+        public void shouldSupportAnEmptyStringInDoubleQuotesAsAParameter() {
+            exec.execute("foo \"\"");
+            specify(target.fooParameter, should.equal(""));
+        }
+
+        public void shouldNotAllowAnEmptyStringInDoubleQuotesAsAPartOfTheCommandName() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("\"\" foo x");
+                }
+            }, should.raise(CommandNotFoundException.class));
+        }
+
         public void shouldNotAllowNullAsAPartOfAWord() {
             target.fooParameter = "initial value";
             specify(new Block() {
@@ -407,6 +430,18 @@ public class CommandExecuterSpec extends Specification<Object> {
             specify(target.integerParam, should.equal(6));
         }
 
+        public void theFactoryOfAWrapperTypeShouldBeUsedAlsoForThePrimitiveType() {
+            exec.addConverter(new DoublingIntegerConverter());
+            exec.execute("constructorError 3");
+            specify(target.constructorErrorValue, should.equal(6));
+        }
+
+        public void theFactoriesOfOneExecuterShouldNotAffectOtherExecuters() {
+            exec.addConverter(new DoublingIntegerConverter());
+            new CommandExecuter(target).execute("integer 3");
+            specify(target.integerParam, should.equal(3));
+        }
+
         /**
          * The constructor {@link Integer#Integer(String)} will throw
          * an exception if the string can not be converted to an integer.
@@ -524,6 +559,160 @@ public class CommandExecuterSpec extends Specification<Object> {
         }
     }
 
+    public class LargeVarargParametersConvertedInParallel {
+
+        private class TargetMock implements CommandService {
+            private Integer[] values;
+
+            public void sum(Integer... values) {
+                this.values = values;
+            }
+        }
+
+        private class FailingIntegerConverter implements Converter {
+
+            public Object valueOf(String sourceValue, Class<?> targetType) {
+                if (sourceValue.startsWith("bad")) {
+                    throw new IllegalStateException(sourceValue);
+                }
+                return Integer.valueOf(sourceValue);
+            }
+
+            public Class<Integer> supportedTargetType() {
+                return Integer.class;
+            }
+
+            public void setProvider(ConversionService provider) {
+            }
+        }
+
+        private TargetMock target;
+        private CommandExecuter exec;
+
+        public Object create() {
+            target = new TargetMock();
+            exec = new CommandExecuter(target);
+            exec.setParallelConversionThreshold(100);
+            return null;
+        }
+
+        private String sumOf(int count, String... replacements) {
+            StringBuilder command = new StringBuilder("sum");
+            for (int i = 0; i < count; i++) {
+                String value = String.valueOf(i);
+                for (String replacement : replacements) {
+                    if (replacement.equals("bad" + i)) {
+                        value = replacement;
+                    }
+                }
+                command.append(' ').append(value);
+            }
+            return command.toString();
+        }
+
+        public void shouldConvertAllValuesInOrder() {
+            exec.execute(sumOf(10000));
+            specify(target.values.length, should.equal(10000));
+            for (int i = 0; i < target.values.length; i++) {
+                specify(target.values[i], should.equal(i));
+            }
+        }
+
+        public void shouldConvertFewValuesAsUsual() {
+            exec.execute(sumOf(3));
+            specify(target.values, should.containInOrder(0, 1, 2));
+        }
+
+        public void shouldReportTheFailureOfTheFirstIndex() {
+            exec.addConverter(new FailingIntegerConverter());
+            for (int i = 0; i < 10; i++) {
+                try {
+                    exec.execute(sumOf(10000, "bad3000", "bad9000", "bad6000") + " " + i);
+                    specify(false);
+                } catch (CommandExecutionException e) {
+                    specify(e.getCause().getMessage(), should.equal("bad3000"));
+                }
+            }
+        }
+    }
+
+    public class CommandsWhichAreAlreadySplitIntoWords {
+
+        private class TargetMock implements CommandService {
+            private String[] params;
+
+            public void methodOne(String... params) {
+                this.params = params;
+            }
+        }
+
+        private TargetMock target;
+        private CommandExecuter exec;
+        private List<String> audited;
+
+        public Object create() {
+            target = new TargetMock();
+            exec = new CommandExecuter(target);
+            audited = new ArrayList<String>();
+            exec.setAuditor(new CommandAuditor() {
+                public void commandExecuted(String command, Throwable failure, long durationNanos) {
+                    audited.add(command);
+                }
+            });
+            return null;
+        }
+
+        public void shouldNotParseTheWords() {
+            exec.execute("method", "one", "a \"quoted\" \\ word", "");
+            specify(target.params, should.containInOrder("a \"quoted\" \\ word", ""));
+        }
+
+        public void shouldPassNullWordsAsNull() {
+            exec.execute("method", "one", null, "x");
+            specify(target.params, should.containInOrder(null, "x"));
+        }
+
+        public void shouldAcceptWordsWhichAreNotStrings() {
+            exec.execute(new StringBuilder("method"), "one", new StringBuilder("two words"));
+            specify(target.params, should.containInOrder("two words"));
+        }
+
+        public void shouldReportTheWordsAsAnEquivalentCommand() {
+            exec.execute("method", "one", "two words", null, "\"");
+            specify(audited.get(0), should.equal("method one \"two words\" \\0 \\\""));
+            exec.execute(audited.get(0));
+            specify(target.params, should.containInOrder("two words", null, "\""));
+        }
+
+        public void shouldPassEmptyWordsAsEmptyStrings() {
+            exec.execute("method", "one", "", "x", "");
+            specify(target.params, should.containInOrder("", "x", ""));
+            specify(audited.get(0), should.equal("method one \"\" x \"\""));
+            exec.execute(audited.get(0));
+            specify(target.params, should.containInOrder("", "x", ""));
+        }
+
+        public void shouldNotUseEmptyWordsInTheCommandName() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("method", "", "one");
+                }
+            }, should.raise(CommandNotFoundException.class));
+        }
+
+        public void shouldDoNothingWithoutWords() {
+            specify(exec.execute(new String[0]), should.equal(null));
+        }
+
+        public void shouldReportMissingCommandsAsUsual() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("method", "two");
+                }
+            }, should.raise(CommandNotFoundException.class, "command not found: method two"));
+        }
+    }
+
     public class MultiWordCommands {
 
         private class TargetMock implements CommandService {
@@ -586,6 +775,171 @@ public class CommandExecuterSpec extends Specification<Object> {
         }
     }
 
+    public class WhenALongerCommandNameMatches {
+
+        private class TargetMock implements CommandService {
+            private int fooBarExecuted;
+
+            public void fooBar(Point p) {
+                fooBarExecuted++;
+            }
+
+            @SuppressWarnings({"UnusedDeclaration"})
+            public void foo(Point p1, Point p2) {
+            }
+        }
+
+        private class CountingPointConverter implements Converter {
+            private int conversions;
+
+            public Object valueOf(String sourceValue, Class<?> targetType) throws InvalidSourceValueException, TargetTypeNotSupportedException {
+                conversions++;
+                return new Point();
+            }
+
+            public Class<?> supportedTargetType() {
+                return Point.class;
+            }
+
+            public void setProvider(ConversionService provider) {
+            }
+        }
+
+        private TargetMock target;
+        private CountingPointConverter converter;
+        private CommandExecuter exec;
+
+        public Object create() {
+            target = new TargetMock();
+            converter = new CountingPointConverter();
+            exec = new CommandExecuter(target);
+            exec.addConverter(converter);
+            return null;
+        }
+
+        public void shouldNotConvertTheParametersOfShorterCommandNames() {
+            exec.execute("foo bar 1,2");
+            specify(target.fooBarExecuted, should.equal(1));
+            specify(converter.conversions, should.equal(1));
+        }
+    }
+
+    public class CompletingCommands {
+
+        private class TargetMock implements CommandService {
+
+            @SuppressWarnings({"UnusedDeclaration"})
+            public void methodOne() {
+            }
+
+            @SuppressWarnings({"UnusedDeclaration"})
+            public void methodOneMore() {
+            }
+
+            @SuppressWarnings({"UnusedDeclaration"})
+            public void methodTwo(MyEnum x) {
+            }
+
+            @SuppressWarnings({"UnusedDeclaration"})
+            public void enums(String s, MyEnum... x) {
+            }
+
+            @SuppressWarnings({"UnusedDeclaration"})
+            public void getHTTPStatus() {
+            }
+        }
+
+        private CommandExecuter exec;
+
+        public Object create() {
+            exec = new CommandExecuter(new TargetMock());
+            return null;
+        }
+
+        public void shouldCompleteTheFirstWordOfACommand() {
+            specify(exec.complete("me"), should.containInOrder("method"));
+            specify(exec.complete(""), should.containInOrder("enums", "get", "method"));
+        }
+
+        public void shouldCompleteTheFollowingWordsOfACommand() {
+            specify(exec.complete("method "), should.containInOrder("one", "two"));
+            specify(exec.complete("method one m"), should.containInOrder("more"));
+            specify(exec.complete("get "), should.containInOrder("HTTPStatus"));
+        }
+
+        public void shouldCompleteEnumParameters() {
+            specify(exec.complete("method two "), should.containInOrder("BAR", "FOO"));
+            specify(exec.complete("method two F"), should.containInOrder("FOO"));
+        }
+
+        public void shouldCompleteEnumVarargParameters() {
+            specify(exec.complete("enums "), should.containInOrder());
+            specify(exec.complete("enums x B"), should.containInOrder("BAR"));
+            specify(exec.complete("enums x FOO B"), should.containInOrder("BAR"));
+        }
+
+        public void shouldCompleteNothingForUnknownCommands() {
+            specify(exec.complete("foo "), should.containInOrder());
+            specify(exec.complete("method three "), should.containInOrder());
+        }
+
+        public void shouldCompleteTheCommandsOfNewTargets() {
+            exec.addTarget("extra", new TargetMock());
+            specify(exec.complete("ex"), should.containInOrder("extra"));
+            specify(exec.complete("extra method "), should.containInOrder("one", "two"));
+        }
+    }
+
+    public class WhenTheCommandIsNotFound {
+
+        private class TargetMock implements CommandService {
+
+            @SuppressWarnings({"UnusedDeclaration"})
+            public void methodOne() {
+            }
+
+            @SuppressWarnings({"UnusedDeclaration"})
+            public void methodTwo(int x) {
+            }
+
+            @SuppressWarnings({"UnusedDeclaration"})
+            public void somethingElse() {
+            }
+        }
+
+        private CommandExecuter exec;
+
+        public Object create() {
+            exec = new CommandExecuter(new TargetMock());
+            return null;
+        }
+
+        private CommandNotFoundException exceptionFrom(String command) {
+            try {
+                exec.execute(command);
+            } catch (CommandNotFoundException e) {
+                return e;
+            }
+            throw new AssertionError("command was found: " + command);
+        }
+
+        public void shouldSuggestCommandsWithASimilarName() {
+            specify(exceptionFrom("methd one").getSuggestions(), should.containInOrder("method one"));
+        }
+
+        public void shouldSuggestCommandsWhenThereAreParameters() {
+            specify(exceptionFrom("method tow 42").getSuggestions(), should.containInOrder("method two", "method one"));
+        }
+
+        public void shouldSuggestTheCommandWhenItsParametersAreWrong() {
+            specify(exceptionFrom("method two x").getSuggestions(), should.containInOrder("method two", "method one"));
+        }
+
+        public void shouldSuggestNothingWhenNoCommandIsSimilar() {
+            specify(exceptionFrom("xyzzy").getSuggestions(), should.containInOrder());
+        }
+    }
+
     public class CommandsWithOverloadedMethods {
 
         private class TargetMock implements CommandService {
@@ -657,22 +1011,33 @@ public class CommandExecuterSpec extends Specification<Object> {
         }
     }
 
-    public class InACornerSituationTheCommandExecuter {
+    public class CommandsWithOverloadsOfDifferentSpecificity {
 
         private class TargetMock implements CommandService {
-            private Boolean booleanCaseValue;
-            private int nullCheckExecuted;
+            private String called;
 
-            public void booleanCase(boolean x) {
-                booleanCaseValue = x;
+            public void number(int x) {
+                called = "int";
             }
 
-            public void nullChecknull() {
-                nullCheckExecuted++;
+            public void number(Integer x) {
+                called = "Integer";
             }
 
-            public void nullCheckNull() {
-                nullCheckExecuted++;
+            public void number(Number x) {
+                called = "Number";
+            }
+
+            public void name(MyEnum x) {
+                called = "MyEnum";
+            }
+
+            public void name(String x) {
+                called = "String";
+            }
+
+            public void name(Object x) {
+                called = "Object";
             }
         }
 
@@ -685,44 +1050,38 @@ public class CommandExecuterSpec extends Specification<Object> {
             return null;
         }
 
-        /**
-         * Boolean's constructor would convert "foo" to FALSE, but
-         * we want to have stricter conversions, especially if there
-         * would be an overloaded method with more exact parameters.
-         */
-        public void shouldAllowCreatingABooleanOnlyFromTrueOrFalse() {
-            specify(new Block() {
-                public void run() throws Throwable {
-                    exec.execute("booleanCase 0");
-                }
-            }, should.raise(CommandNotFoundException.class));
-            specify(target.booleanCaseValue, should.equal(null));
-            exec.execute("booleanCase true");
-            specify(target.booleanCaseValue, should.equal(true));
-            exec.execute("booleanCase false");
-            specify(target.booleanCaseValue, should.equal(false));
+        public void shouldPreferPrimitiveTypesOverWrapperTypes() {
+            exec.execute("number 1");
+            specify(target.called, should.equal("int"));
         }
 
-        public void shouldNotMistakeNullValuesToBePartOfTheMethodName() {
-            specify(new Block() {
-                public void run() throws Throwable {
-                    exec.execute("null check \\0");
-                }
-            }, should.raise(CommandNotFoundException.class));
-            specify(target.nullCheckExecuted, should.equal(0));
+        public void shouldPreferSubclassesOverSuperclasses() {
+            exec.execute("number \\0");
+            specify(target.called, should.equal("Integer"));
+        }
+
+        public void shouldPreferEnumsOverStrings() {
+            exec.execute("name FOO");
+            specify(target.called, should.equal("MyEnum"));
+        }
+
+        public void shouldFallBackToTheLessSpecificOverloadWhenTheMoreSpecificDoesNotMatch() {
+            exec.execute("name foo");
+            specify(target.called, should.equal("String"));
         }
     }
 
-    public class WhenTheTargetMethodReturnsAValue {
+    public class OverloadsWhichAreMoreSpecificAtDifferentPositions {
 
         private class TargetMock implements CommandService {
-            private String stringToReturn;
+            private String called;
 
-            public String returnsString() {
-                return stringToReturn;
+            public void crossed(int x, Integer y) {
+                called = "int, Integer";
             }
 
-            public void voidMethod() {
+            public void crossed(Integer x, int y) {
+                called = "Integer, int";
             }
         }
 
@@ -735,18 +1094,845 @@ public class CommandExecuterSpec extends Specification<Object> {
             return null;
         }
 
-        public void shouldReturnTheValueToTheUser() {
-            target.stringToReturn = "the value";
-            Object value = exec.execute("returnsString");
-            specify(value, should.equal("the value"));
+        public void shouldBeAmbiguousWhenBothMatch() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("crossed 1 2");
+                }
+            }, should.raise(AmbiguousMethodsException.class));
         }
 
-        public void shouldReturnNullFromVoidMethods() {
+        public void shouldExecuteTheOnlyOneWhichMatches() {
+            exec.execute("crossed 1 \\0");
+            specify(target.called, should.equal("int, Integer"));
+            exec.execute("crossed", null, "2");
+            specify(target.called, should.equal("Integer, int"));
+        }
+    }
+
+    public class InACornerSituationTheCommandExecuter {
+
+        private class TargetMock implements CommandService {
+            private Boolean booleanCaseValue;
+            private int nullCheckExecuted;
+
+            public void booleanCase(boolean x) {
+                booleanCaseValue = x;
+            }
+
+            public void nullChecknull() {
+                nullCheckExecuted++;
+            }
+
+            public void nullCheckNull() {
+                nullCheckExecuted++;
+            }
+        }
+
+        private TargetMock target;
+        private CommandExecuter exec;
+
+        public Object create() {
+            target = new TargetMock();
+            exec = new CommandExecuter(target);
+            return null;
+        }
+
+        /**
+         * Boolean's constructor would convert "foo" to FALSE, but
+         * we want to have stricter conversions, especially if there
+         * would be an overloaded method with more exact parameters.
+         */
+        public void shouldAllowCreatingABooleanOnlyFromTrueOrFalse() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("booleanCase 0");
+                }
+            }, should.raise(CommandNotFoundException.class));
+            specify(target.booleanCaseValue, should.equal(null));
+            exec.execute("booleanCase true");
+            specify(target.booleanCaseValue, should.equal(true));
+            exec.execute("booleanCase false");
+            specify(target.booleanCaseValue, should.equal(false));
+        }
+
+        public void shouldNotMistakeNullValuesToBePartOfTheMethodName() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("null check \\0");
+                }
+            }, should.raise(CommandNotFoundException.class));
+            specify(target.nullCheckExecuted, should.equal(0));
+        }
+    }
+
+    public class WhenTheTargetMethodReturnsAValue {
+
+        private class TargetMock implements CommandService {
+            private String stringToReturn;
+
+            public String returnsString() {
+                return stringToReturn;
+            }
+
+            public void voidMethod() {
+            }
+        }
+
+        private TargetMock target;
+        private CommandExecuter exec;
+
+        public Object create() {
+            target = new TargetMock();
+            exec = new CommandExecuter(target);
+            return null;
+        }
+
+        public void shouldReturnTheValueToTheUser() {
+            target.stringToReturn = "the value";
+            Object value = exec.execute("returnsString");
+            specify(value, should.equal("the value"));
+        }
+
+        public void shouldReturnNullFromVoidMethods() {
             Object value = exec.execute("voidMethod");
             specify(value, should.equal(null));
         }
     }
 
+    public class WhenTheTargetMethodIsCacheable {
+
+        private class TargetMock implements CommandService {
+            private int cachedExecuted;
+            private int expiringExecuted;
+            private int notCachedExecuted;
+
+            @Cacheable(timeToLive = 60000)
+            public String cached(int x) {
+                cachedExecuted++;
+                return "result " + x;
+            }
+
+            @Cacheable(timeToLive = 1)
+            public void expiring() {
+                expiringExecuted++;
+            }
+
+            public void notCached() {
+                notCachedExecuted++;
+            }
+
+            @Cacheable(timeToLive = 60000)
+            public String modifiesItsVarargs(String... parts) {
+                cachedExecuted++;
+                String result = Arrays.toString(parts);
+                parts[0] = "modified";
+                return result;
+            }
+        }
+
+        private TargetMock target;
+        private CommandExecuter exec;
+
+        public Object create() {
+            target = new TargetMock();
+            exec = new CommandExecuter(target);
+            return null;
+        }
+
+        public void shouldReturnTheCachedResultWithoutCallingTheMethodAgain() {
+            specify(exec.execute("cached 1"), should.equal("result 1"));
+            specify(exec.execute("cached 1"), should.equal("result 1"));
+            specify(target.cachedExecuted, should.equal(1));
+            specify(exec.getResultCache().hits(), should.equal(1L));
+            specify(exec.getResultCache().misses(), should.equal(1L));
+        }
+
+        public void shouldCacheTheResultsOfDifferentParametersSeparately() {
+            specify(exec.execute("cached 1"), should.equal("result 1"));
+            specify(exec.execute("cached 2"), should.equal("result 2"));
+            specify(target.cachedExecuted, should.equal(2));
+        }
+
+        public void shouldCallTheMethodAgainAfterTheResultHasExpired() throws InterruptedException {
+            exec.execute("expiring");
+            Thread.sleep(10);
+            exec.execute("expiring");
+            specify(target.expiringExecuted, should.equal(2));
+        }
+
+        public void shouldEvictTheLeastRecentlyUsedResultWhenTheCacheIsFull() {
+            exec.setResultCacheSize(2);
+            exec.execute("cached 1");
+            exec.execute("cached 2");
+            exec.execute("cached 1");
+            exec.execute("cached 3");
+            specify(target.cachedExecuted, should.equal(3));
+            exec.execute("cached 1");
+            specify(target.cachedExecuted, should.equal(3));
+            exec.execute("cached 2");
+            specify(target.cachedExecuted, should.equal(4));
+        }
+
+        public void shouldEvictTheExpiredResultsBeforeTheLeastRecentlyUsedOnes() throws InterruptedException {
+            exec.setResultCacheSize(2);
+            exec.execute("cached 1");
+            exec.execute("expiring");
+            Thread.sleep(10);
+            exec.execute("cached 2");
+            exec.execute("cached 1");
+            specify(target.cachedExecuted, should.equal(2));
+        }
+
+        public void shouldNotBeAffectedByTheMethodModifyingItsParameters() {
+            specify(exec.execute("modifiesItsVarargs a b"), should.equal("[a, b]"));
+            specify(exec.execute("modifiesItsVarargs a b"), should.equal("[a, b]"));
+            specify(target.cachedExecuted, should.equal(1));
+        }
+
+        public void shouldNotCacheMethodsWhichAreNotMarkedCacheable() {
+            exec.execute("notCached");
+            exec.execute("notCached");
+            specify(target.notCachedExecuted, should.equal(2));
+            specify(exec.getResultCache().size(), should.equal(0));
+        }
+    }
+
+    public class WhenTheSameCommandIsRepeated {
+
+        private class TargetMock implements CommandService {
+            private Integer integerParam;
+            private Point pointParam;
+            private String[] varargParams;
+
+            public void integer(Integer x) {
+                integerParam = x;
+            }
+
+            public void point(Point x) {
+                pointParam = x;
+            }
+
+            public void vararg(String... x) {
+                varargParams = x;
+            }
+
+            public void integers(Integer... x) {
+            }
+        }
+
+        private class CountingIntegerConverter implements Converter {
+            private final int multiplier;
+            private int conversions;
+
+            public CountingIntegerConverter(int multiplier) {
+                this.multiplier = multiplier;
+            }
+
+            public Object valueOf(String sourceValue, Class<?> targetType) throws InvalidSourceValueException, TargetTypeNotSupportedException {
+                conversions++;
+                return Integer.valueOf(sourceValue) * multiplier;
+            }
+
+            public Class<?> supportedTargetType() {
+                return Integer.class;
+            }
+
+            public void setProvider(ConversionService provider) {
+            }
+        }
+
+        private class CacheableCountingIntegerConverter extends CountingIntegerConverter implements CacheableConverter {
+
+            public CacheableCountingIntegerConverter() {
+                super(1);
+            }
+        }
+
+        private class PointConverter implements Converter {
+
+            public Object valueOf(String sourceValue, Class<?> targetType) throws InvalidSourceValueException, TargetTypeNotSupportedException {
+                return new Point();
+            }
+
+            public Class<?> supportedTargetType() {
+                return Point.class;
+            }
+
+            public void setProvider(ConversionService provider) {
+            }
+        }
+
+        private TargetMock target;
+        private CommandExecuter exec;
+
+        public Object create() {
+            target = new TargetMock();
+            exec = new CommandExecuter(target);
+            return null;
+        }
+
+        public void shouldNotConvertImmutableParametersAgain() {
+            CountingIntegerConverter converter = new CacheableCountingIntegerConverter();
+            exec.addConverter(converter);
+            exec.execute("integer 5");
+            exec.execute("integer 5");
+            specify(target.integerParam, should.equal(5));
+            specify(converter.conversions, should.equal(1));
+        }
+
+        public void shouldConvertAgainWithConvertersWhichAreNotCacheable() {
+            CountingIntegerConverter converter = new CountingIntegerConverter(1);
+            exec.addConverter(converter);
+            exec.execute("integer 5");
+            exec.execute("integer 5");
+            specify(converter.conversions, should.equal(2));
+        }
+
+        public void shouldConvertLargeVarargArraysAgain() {
+            CountingIntegerConverter converter = new CacheableCountingIntegerConverter();
+            exec.addConverter(converter);
+            String command = "integers 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17";
+            exec.execute(command);
+            exec.execute(command);
+            specify(converter.conversions, should.equal(34));
+        }
+
+        public void shouldConvertTheParametersAgainAfterTheConvertersHaveChanged() {
+            exec.execute("integer 5");
+            exec.addConverter(new CountingIntegerConverter(2));
+            exec.execute("integer 5");
+            specify(target.integerParam, should.equal(10));
+        }
+
+        public void shouldNotShareMutableParametersBetweenInvocations() {
+            exec.addConverter(new PointConverter());
+            exec.execute("point 1,2");
+            Point first = target.pointParam;
+            exec.execute("point 1,2");
+            specify(target.pointParam == first, should.equal(false));
+        }
+
+        public void shouldNotShareVarargArraysBetweenInvocations() {
+            exec.execute("vararg a b");
+            String[] first = target.varargParams;
+            first[0] = "changed";
+            exec.execute("vararg a b");
+            specify(target.varargParams, should.containInOrder("a", "b"));
+            specify(target.varargParams == first, should.equal(false));
+        }
+    }
+
+    public class WhenTheTargetMethodIsRateLimited {
+
+        private class TargetMock implements CommandService {
+            private int limitedExecuted;
+            private int configuredExecuted;
+            private int openExecuted;
+
+            @RateLimited(permitsPerSecond = 0.001, burst = 2)
+            public void limited(int x) {
+                limitedExecuted++;
+            }
+
+            public void configured() {
+                configuredExecuted++;
+            }
+
+            @RateLimited(permitsPerSecond = 0.001, burst = 1)
+            public void openDoor(int x) {
+            }
+
+            public void open(String s1, String s2) {
+                openExecuted++;
+            }
+        }
+
+        private TargetMock target;
+        private CommandExecuter exec;
+
+        public Object create() {
+            target = new TargetMock();
+            exec = new CommandExecuter(target);
+            return null;
+        }
+
+        public void shouldRejectCommandsOverTheLimit() {
+            exec.execute("limited 1");
+            exec.execute("limited 2");
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("limited 3");
+                }
+            }, should.raise(RateLimitExceededException.class, "rate limit exceeded: limited 3"));
+            specify(target.limitedExecuted, should.equal(2));
+            specify(exec.getRateLimit("limited").rejections(), should.equal(1L));
+        }
+
+        public void shouldRejectCommandsBeforeConvertingTheirParameters() {
+            exec.execute("limited 1");
+            exec.execute("limited 2");
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("limited not_a_number");
+                }
+            }, should.raise(RateLimitExceededException.class));
+        }
+
+        public void shouldNotChargeTheLimitForCommandsWhichDoNotMatch() {
+            exec.execute("limited 1");
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("limited not_a_number");
+                }
+            }, should.raise(CommandNotFoundException.class));
+            exec.execute("limited 2");
+            specify(target.limitedExecuted, should.equal(2));
+            specify(exec.getRateLimit("limited").rejections(), should.equal(0L));
+        }
+
+        public void shouldChargeOnlyTheLimitOfTheMethodWhichIsExecuted() {
+            exec.execute("open door x");
+            exec.execute("open door y");
+            exec.execute("open door z");
+            specify(target.openExecuted, should.equal(3));
+            specify(exec.getRateLimit("openDoor").rejections(), should.equal(0L));
+        }
+
+        public void shouldRejectRepeatedCommandsOverTheLimit() {
+            exec.execute("limited 1");
+            exec.execute("limited 1");
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("limited 1");
+                }
+            }, should.raise(RateLimitExceededException.class));
+        }
+
+        public void shouldAllowConfiguringTheLimits() {
+            specify(exec.getRateLimit("configured"), should.equal(null));
+            exec.setRateLimit("configured", 0.001, 1);
+            exec.execute("configured");
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("configured");
+                }
+            }, should.raise(RateLimitExceededException.class));
+            specify(target.configuredExecuted, should.equal(1));
+        }
+    }
+
+    public class WhenTheTargetMethodTakesTooLong {
+
+        private class TargetMock implements CommandService {
+            private final CountDownLatch started = new CountDownLatch(1);
+            private final CountDownLatch interrupted = new CountDownLatch(1);
+
+            public String quick() {
+                return "done";
+            }
+
+            public void hang() {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        }
+
+        private TargetMock target;
+        private CommandExecuter exec;
+
+        public Object create() {
+            target = new TargetMock();
+            exec = new CommandExecuter(target);
+            return null;
+        }
+
+        public void shouldReturnTheValueIfTheMethodReturnsInTime() {
+            specify(exec.execute("quick", 10, TimeUnit.SECONDS), should.equal("done"));
+        }
+
+        public void shouldInterruptTheMethodAfterTheTimeout() throws InterruptedException {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("hang", 10, TimeUnit.MILLISECONDS);
+                }
+            }, should.raise(CommandTimeoutException.class, "command timed out after 10 milliseconds: hang"));
+            specify(target.interrupted.await(10, TimeUnit.SECONDS), should.equal(true));
+        }
+
+        public void shouldReportOtherFailuresAsUsual() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("unknown", 10, TimeUnit.SECONDS);
+                }
+            }, should.raise(CommandNotFoundException.class));
+        }
+
+        public void shouldAllowCancellingACommandWhichIsBeingExecuted() throws InterruptedException {
+            Future<Object> future = exec.submit("hang");
+            specify(target.started.await(10, TimeUnit.SECONDS), should.equal(true));
+            future.cancel(true);
+            specify(target.interrupted.await(10, TimeUnit.SECONDS), should.equal(true));
+        }
+    }
+
+    public class WhenTheTargetMethodIsInAConcurrencyGroup {
+
+        private class TargetMock implements CommandService {
+            private final CountDownLatch started = new CountDownLatch(1);
+            private final CountDownLatch finish = new CountDownLatch(1);
+
+            @ConcurrencyGroup("slow")
+            public String slow() throws InterruptedException {
+                started.countDown();
+                finish.await(10, TimeUnit.SECONDS);
+                return "slow";
+            }
+
+            @ConcurrencyGroup("slow")
+            public String other() {
+                return "other";
+            }
+
+            public String quick() {
+                return "quick";
+            }
+        }
+
+        private TargetMock target;
+        private CommandExecuter exec;
+
+        public Object create() {
+            target = new TargetMock();
+            exec = new CommandExecuter(target);
+            exec.defineConcurrencyGroup("slow", 1, 0);
+            return null;
+        }
+
+        public void shouldExecuteCommandsOfTheGroupWhileTheLimitIsNotReached() {
+            specify(exec.execute("other"), should.equal("other"));
+            specify(exec.execute("other"), should.equal("other"));
+            specify(exec.getConcurrencyGroup("slow").active(), should.equal(0));
+        }
+
+        public void shouldRejectCommandsOverTheLimit() throws Exception {
+            Future<Object> slow = exec.submit("slow");
+            specify(target.started.await(10, TimeUnit.SECONDS), should.equal(true));
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("other");
+                }
+            }, should.raise(ConcurrencyLimitExceededException.class, "too many concurrent commands in group slow: other"));
+            specify(exec.getConcurrencyGroup("slow").rejections(), should.equal(1L));
+            target.finish.countDown();
+            specify(slow.get(10, TimeUnit.SECONDS), should.equal("slow"));
+            specify(exec.execute("other"), should.equal("other"));
+        }
+
+        public void shouldNotLimitCommandsOutsideTheGroup() throws Exception {
+            Future<Object> slow = exec.submit("slow");
+            specify(target.started.await(10, TimeUnit.SECONDS), should.equal(true));
+            specify(exec.execute("quick"), should.equal("quick"));
+            target.finish.countDown();
+            slow.get(10, TimeUnit.SECONDS);
+        }
+
+        public void shouldAllowAssigningMethodsToGroupsAtRuntime() throws Exception {
+            exec.setConcurrencyGroup("quick", "slow");
+            Future<Object> slow = exec.submit("slow");
+            specify(target.started.await(10, TimeUnit.SECONDS), should.equal(true));
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("quick");
+                }
+            }, should.raise(ConcurrencyLimitExceededException.class));
+            target.finish.countDown();
+            slow.get(10, TimeUnit.SECONDS);
+        }
+
+        public void shouldNotLimitGroupsWhichHaveNotBeenDefined() {
+            exec = new CommandExecuter(target);
+            specify(exec.getConcurrencyGroup("slow"), should.equal(null));
+            specify(exec.execute("other"), should.equal("other"));
+        }
+    }
+
+    public class WhenCommandsAreAudited {
+
+        private class TargetMock implements CommandService {
+            public String ok() {
+                return "ok";
+            }
+
+            public void fail() {
+                throw new IllegalStateException();
+            }
+        }
+
+        private File file;
+        private AuditLog log;
+        private CommandExecuter exec;
+
+        public Object create() throws IOException {
+            file = File.createTempFile("audit", ".log");
+            log = new AuditLog(file, 4, AuditLog.OverflowPolicy.BLOCK);
+            exec = new CommandExecuter(new TargetMock());
+            exec.setAuditor(log);
+            return null;
+        }
+
+        public void destroy() {
+            file.delete();
+        }
+
+        private List<String[]> auditedLines() throws Exception {
+            log.close();
+            List<String[]> lines = new ArrayList<String[]>();
+            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lines.add(line.split("\t"));
+                }
+            } finally {
+                in.close();
+            }
+            return lines;
+        }
+
+        public void shouldRecordTheCommandsAndTheirOutcomes() throws Exception {
+            exec.execute("ok");
+            try {
+                exec.execute("fail");
+            } catch (CommandTargetException e) {
+                // expected
+            }
+            List<String[]> lines = auditedLines();
+            specify(lines.size(), should.equal(2));
+            specify(lines.get(0)[2], should.equal("OK"));
+            specify(lines.get(0)[3], should.equal("ok"));
+            specify(lines.get(1)[2], should.equal(CommandTargetException.class.getName()));
+            specify(lines.get(1)[3], should.equal("fail"));
+        }
+
+        public void shouldWaitForFreeSpaceWhenTheBufferIsFull() throws Exception {
+            for (int i = 0; i < 100; i++) {
+                exec.execute("ok");
+            }
+            specify(auditedLines().size(), should.equal(100));
+            specify(log.written(), should.equal(100L));
+            specify(log.dropped(), should.equal(0L));
+        }
+
+        public void shouldDropTheCommandsAfterTheLogIsClosed() throws Exception {
+            log.close();
+            exec.execute("ok");
+            specify(log.dropped(), should.equal(1L));
+            specify(auditedLines().size(), should.equal(0));
+        }
+
+        public void shouldDropTheCommandsInsteadOfWaitingWhenWritingFails() throws Exception {
+            log.close();
+            FileChannel closedChannel = new RandomAccessFile(file, "rw").getChannel();
+            closedChannel.close();
+            log = new AuditLog(closedChannel, file.getName(), 4, AuditLog.OverflowPolicy.BLOCK);
+            exec.setAuditor(log);
+            for (int i = 0; i < 100; i++) {
+                exec.execute("ok");
+            }
+            specify(log.written(), should.equal(0L));
+            specify(log.dropped(), should.equal(100L));
+            specify(log.failure() instanceof ClosedChannelException);
+            specify(new Block() {
+                public void run() throws Throwable {
+                    log.close();
+                }
+            }, should.raise(ClosedChannelException.class));
+        }
+    }
+
+    public class WhenStatisticsAreCollected {
+
+        private class TargetMock implements CommandService {
+            public void often() {
+            }
+
+            public void seldom() {
+            }
+
+            public void fail(String message) {
+                throw new IllegalStateException(message);
+            }
+
+            public String echo(String message) {
+                return message;
+            }
+        }
+
+        private CommandExecuter exec;
+
+        public Object create() {
+            exec = new CommandExecuter();
+            exec.addTarget(new TargetMock());
+            exec.addTarget("stats", new StatsCommands(exec));
+            exec.setValueCacheSize(10);
+            return null;
+        }
+
+        private void tryExecute(String command) {
+            try {
+                exec.execute(command);
+            } catch (CommandExecutionException e) {
+                // expected
+            }
+        }
+
+        public void shouldCountTheCallsOfEachCommand() {
+            exec.execute("often");
+            exec.execute("often");
+            exec.execute("seldom");
+            String top = (String) exec.execute("stats top calls 2");
+            String[] lines = top.split("\\r?\\n");
+            specify(lines.length, should.equal(2));
+            specify(lines[0].startsWith("often: 2 calls, 0 failures,"));
+            specify(lines[1].startsWith("seldom: 1 calls, 0 failures,"));
+        }
+
+        public void shouldCountTheFailuresByExceptionType() {
+            exec.execute("often");
+            tryExecute("fail x");
+            tryExecute("unknown");
+            tryExecute("fail y");
+            specify(exec.getStatistics().executions(), should.equal(4L));
+            String failures = (String) exec.execute("stats failures");
+            specify(failures.contains("java.lang.IllegalStateException: 2 failures, 50.0 %"));
+            specify(failures.contains(CommandNotFoundException.class.getName() + ": 1 failures, 25.0 %"));
+        }
+
+        public void shouldNotCollectStatisticsUnlessEnabled() {
+            CommandExecuter plain = new CommandExecuter(new TargetMock());
+            plain.execute("often");
+            specify(plain.getStatistics(), should.equal(null));
+            plain.setStatisticsEnabled(true);
+            plain.execute("often");
+            specify(plain.getStatistics().executions(), should.equal(1L));
+        }
+
+        public void shouldMeasureTheTimeAndLatencyOfEachCommand() {
+            exec.execute("often");
+            ExecutionStatistics.CommandStatistics often = exec.getStatistics().commands().get(0);
+            specify(often.getMethodName(), should.equal("often"));
+            specify(often.totalTime(TimeUnit.NANOSECONDS) > 0);
+            specify(often.percentile(0.99, TimeUnit.NANOSECONDS) >= often.totalTime(TimeUnit.NANOSECONDS));
+        }
+
+        public void shouldShowTheHitRatesOfTheValueCache() {
+            tryExecute("fail x");
+            exec.execute("echo x");
+            tryExecute("fail y");
+            String converters = (String) exec.execute("stats converters");
+            specify(converters, should.equal(String.format("java.lang.String: 1 hits, 2 misses, 33.3 %% hit rate%n")));
+        }
+    }
+
+    public class WhenAScriptIsExecuted {
+
+        private class TargetMock implements CommandService {
+            private final CountDownLatch bothStarted = new CountDownLatch(2);
+            private final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+            public String together(String name) throws InterruptedException {
+                bothStarted.countDown();
+                boolean concurrent = bothStarted.await(10, TimeUnit.SECONDS);
+                log.add(name);
+                return concurrent ? name : "timeout";
+            }
+
+            @ThreadSafe
+            public String safe(String name) throws InterruptedException {
+                return together(name);
+            }
+
+            public String ordered(String name) {
+                log.add(name);
+                return name;
+            }
+
+            public String barrier() {
+                return "barrier";
+            }
+        }
+
+        private TargetMock target;
+        private ScriptExecuter script;
+
+        public Object create() {
+            target = new TargetMock();
+            script = new ScriptExecuter(new CommandExecuter(target));
+            script.setParallelism(4);
+            return null;
+        }
+
+        private List<ScriptExecuter.LineResult> execute(String lines) throws IOException {
+            return script.execute(new StringReader(lines));
+        }
+
+        public void shouldReportTheResultsInTheOrderOfTheLines() throws IOException {
+            List<ScriptExecuter.LineResult> results = execute("# comment\n\nordered a\nunknown\nordered b\n");
+            specify(results.size(), should.equal(3));
+            specify(results.get(0).getLineNumber(), should.equal(3));
+            specify(results.get(0).getResult(), should.equal("a"));
+            specify(results.get(1).getFailure() instanceof CommandNotFoundException);
+            specify(results.get(2).getResult(), should.equal("b"));
+        }
+
+        public void shouldExecuteIndependentLinesConcurrently() throws IOException {
+            List<ScriptExecuter.LineResult> results = execute("&together a\n&together b\n");
+            specify(results.get(0).getResult(), should.equal("a"));
+            specify(results.get(1).getResult(), should.equal("b"));
+        }
+
+        public void shouldExecuteIndependentBlocksConcurrently() throws IOException {
+            List<ScriptExecuter.LineResult> results = execute("{\ntogether a\ntogether b\n}\nordered c\n");
+            specify(results.get(0).getResult(), should.equal("a"));
+            specify(results.get(1).getResult(), should.equal("b"));
+            specify(target.log.get(2), should.equal("c"));
+        }
+
+        public void shouldExecuteThreadSafeMethodsConcurrently() throws IOException {
+            List<ScriptExecuter.LineResult> results = execute("safe a\nsafe b\n");
+            specify(results.get(0).getResult(), should.equal("a"));
+            specify(results.get(1).getResult(), should.equal("b"));
+        }
+
+        public void shouldWaitForTheIndependentCommandsBeforeAnOrderedCommand() throws IOException {
+            execute("&ordered a\n&ordered b\nordered c\n&ordered d\n");
+            specify(target.log.get(2), should.equal("c"));
+            specify(target.log.get(3), should.equal("d"));
+        }
+
+        public void shouldWaitForTheIndependentCommandsAtABarrier() throws IOException {
+            execute("&ordered a\n&ordered b\n--\n&ordered c\n");
+            specify(target.log.get(2), should.equal("c"));
+        }
+
+        public void shouldExecuteACommandNamedLikeABarrier() throws IOException {
+            List<ScriptExecuter.LineResult> results = execute("barrier\n");
+            specify(results.size(), should.equal(1));
+            specify(results.get(0).getResult(), should.equal("barrier"));
+        }
+
+        public void shouldExecuteEverythingInOrderWithoutParallelism() throws IOException {
+            script.setParallelism(1);
+            execute("&ordered a\n&ordered b\n&ordered c\n");
+            specify(target.log, should.containInOrder("a", "b", "c"));
+        }
+    }
+
     public class WhenTheTargetMethodThrowsAnException {
 
         private class TargetMock implements CommandService {
@@ -773,6 +1959,112 @@ public class CommandExecuterSpec extends Specification<Object> {
         }
     }
 
+    public class CommandsOfManyTargets {
+
+        private class FirstTargetMock implements CommandService {
+            private int fooExecuted;
+            private Integer ambiguousValue;
+
+            public void foo() {
+                fooExecuted++;
+            }
+
+            public void ambiguous(Integer x) {
+                ambiguousValue = x;
+            }
+
+            public void status() {
+                fooExecuted += 10;
+            }
+        }
+
+        private class SecondTargetMock implements CommandService {
+            private int barExecuted;
+            private int statusExecuted;
+            private Double ambiguousValue;
+
+            public void bar() {
+                barExecuted++;
+            }
+
+            public void ambiguous(Double x) {
+                ambiguousValue = x;
+            }
+
+            public void status() {
+                statusExecuted++;
+            }
+        }
+
+        private FirstTargetMock first;
+        private SecondTargetMock second;
+        private CommandExecuter exec;
+
+        public Object create() {
+            first = new FirstTargetMock();
+            second = new SecondTargetMock();
+            exec = new CommandExecuter();
+            exec.addTarget(first);
+            return null;
+        }
+
+        public void shouldExecuteTheMethodsOfAllTargets() {
+            exec.addTarget("second", second);
+            exec.execute("foo");
+            exec.execute("second bar");
+            specify(first.fooExecuted, should.equal(1));
+            specify(second.barExecuted, should.equal(1));
+        }
+
+        public void shouldSeparateTheTargetsWithNamespaces() {
+            exec.addTarget("second", second);
+            exec.execute("second status");
+            specify(second.statusExecuted, should.equal(1));
+            specify(first.fooExecuted, should.equal(0));
+        }
+
+        public void shouldNotFindTheMethodsOfANamespacedTargetWithoutTheNamespace() {
+            exec.addTarget("second", second);
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("bar");
+                }
+            }, should.raise(CommandNotFoundException.class));
+        }
+
+        public void shouldReportAmbiguousMethodsInDifferentTargets() {
+            exec.addTarget(new CommandService() {
+                @SuppressWarnings({"UnusedDeclaration"})
+                public void ambiguous(Double x) {
+                }
+            });
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.execute("ambiguous 1");
+                }
+            }, should.raise(AmbiguousMethodsException.class));
+            specify(first.ambiguousValue, should.equal(null));
+        }
+
+        public void shouldNotAllowTargetsWhoseMethodsWouldAlwaysBeAmbiguous() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.addTarget(second);
+                }
+            }, should.raise(IllegalArgumentException.class));
+            exec.execute("status");
+            specify(first.fooExecuted, should.equal(10));
+        }
+
+        public void shouldNotAllowNamespacesWhichAreNotIdentifiers() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    exec.addTarget("not valid", second);
+                }
+            }, should.raise(IllegalArgumentException.class));
+        }
+    }
+
     private static class VisibilityRulesTargetMock implements CommandService {
         public int publicMethodExecuted;
         public int protectedMethodExecuted;
@@ -0,0 +1,250 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+@RunWith(JDaveRunner.class)
+public class CommandHistorySpec extends Specification<CommandHistory> {
+
+    private static File createTempDirectory() throws IOException {
+        File dir = File.createTempFile("history", "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+    private static void deleteDirectory(File dir) {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private static Map<File, byte[]> readFiles(File dir) throws IOException {
+        Map<File, byte[]> contents = new HashMap<File, byte[]>();
+        for (File file : dir.listFiles()) {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                byte[] bytes = new byte[(int) raf.length()];
+                raf.readFully(bytes);
+                contents.put(file, bytes);
+            } finally {
+                raf.close();
+            }
+        }
+        return contents;
+    }
+
+    private static void writeFiles(Map<File, byte[]> contents) throws IOException {
+        for (Map.Entry<File, byte[]> entry : contents.entrySet()) {
+            RandomAccessFile raf = new RandomAccessFile(entry.getKey(), "rw");
+            try {
+                raf.write(entry.getValue());
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    public class AnEmptyHistory {
+
+        private File dir;
+        private CommandHistory history;
+
+        public CommandHistory create() throws IOException {
+            dir = createTempDirectory();
+            history = new CommandHistory(dir);
+            return history;
+        }
+
+        public void destroy() throws InterruptedException {
+            history.close();
+            deleteDirectory(dir);
+        }
+
+        public void shouldHaveNoCommands() {
+            specify(history.size(), should.equal(0L));
+            specify(history.tail(10).isEmpty());
+            specify(history.searchBackward("x", 0), should.equal(-1L));
+        }
+
+        public void shouldRecordTheSuccessfulCommandsOfAnExecuter() {
+            history.commandExecuted("foo", null, 0);
+            history.commandExecuted("bar", new IllegalArgumentException(), 0);
+            specify(history.tail(10), should.containInOrder("foo"));
+        }
+
+        public void shouldSkipTheFilesWhichAreNotSegments() throws Exception {
+            history.add("foo");
+            history.close();
+            new File(dir, "notes.history").createNewFile();
+            new File(dir, "1-2-3.history").createNewFile();
+            new File(dir, "0000000005-0000000001.history").createNewFile();
+            history = new CommandHistory(dir);
+            specify(history.tail(10), should.containInOrder("foo"));
+        }
+    }
+
+    public class AHistoryWithCommands {
+
+        private File dir;
+        private CommandHistory history;
+
+        public CommandHistory create() throws IOException {
+            dir = createTempDirectory();
+            history = new CommandHistory(dir, 32, 100);
+            history.add("set foo 1");
+            history.add("get foo");
+            history.add("set bar äö");
+            history.add("get bar");
+            history.add("set foo 2");
+            return history;
+        }
+
+        public void destroy() throws InterruptedException {
+            history.close();
+            deleteDirectory(dir);
+        }
+
+        public void shouldSpreadTheCommandsOverManySegments() {
+            specify(dir.listFiles().length > 1);
+        }
+
+        public void shouldReturnTheCommandsByIndex() {
+            specify(history.size(), should.equal(5L));
+            specify(history.get(0), should.equal("set foo 1"));
+            specify(history.get(2), should.equal("set bar äö"));
+            specify(history.get(4), should.equal("set foo 2"));
+        }
+
+        public void shouldReturnTheNewestCommands() {
+            specify(history.tail(2), should.containInOrder("get bar", "set foo 2"));
+        }
+
+        public void shouldSearchBackwardsFromTheNewestCommand() {
+            specify(history.searchBackward("foo", history.size() - 1), should.equal(4L));
+            specify(history.searchBackward("foo", 3), should.equal(1L));
+            specify(history.searchBackward("foo", 0), should.equal(0L));
+            specify(history.searchBackward("ö", 4), should.equal(2L));
+            specify(history.searchBackward("baz", 4), should.equal(-1L));
+        }
+
+        public void shouldFindTheDistinctCommandsWithAPrefix() throws IOException {
+            history.add("get bar");
+            specify(history.startingWith("get", 10), should.containInOrder("get bar", "get foo"));
+            specify(history.startingWith("set", 2), should.containInOrder("set foo 2", "set bar äö"));
+        }
+
+        public void shouldKeepTheCommandsOverRestarts() throws Exception {
+            history.close();
+            history = new CommandHistory(dir, 32, 100);
+            specify(history.size(), should.equal(5L));
+            history.add("exit");
+            specify(history.tail(3), should.containInOrder("get bar", "set foo 2", "exit"));
+        }
+
+        public void shouldRemoveTheOlderRepeatsWhenCompacting() throws Exception {
+            history.add("get foo");
+            history.add("set foo 1");
+            history.add("quit");
+            history.add("disconnect all");
+            history.compact();
+            specify(history.tail(100), should.containInOrder(
+                    "set bar äö", "get bar", "set foo 2", "get foo", "set foo 1", "quit", "disconnect all"));
+            history.close();
+            history = new CommandHistory(dir, 32, 100);
+            specify(history.size(), should.equal(7L));
+        }
+
+        public void shouldNotDuplicateTheCommandsIfTheCompactedSegmentsWereNotDeleted() throws Exception {
+            history.add("quit");
+            history.close();
+            Map<File, byte[]> beforeCompaction = readFiles(dir);
+            history = new CommandHistory(dir, 32, 100);
+            history.compact();
+            history.close();
+            writeFiles(beforeCompaction);
+
+            history = new CommandHistory(dir, 32, 100);
+            specify(history.size(), should.equal(6L));
+            specify(history.tail(100), should.containInOrder(
+                    "set foo 1", "get foo", "set bar äö", "get bar", "set foo 2", "quit"));
+        }
+    }
+
+    public class AHistoryWithManyFullSegments {
+
+        private File dir;
+        private CommandHistory history;
+
+        public CommandHistory create() throws IOException {
+            dir = createTempDirectory();
+            history = new CommandHistory(dir, 16, 2);
+            return history;
+        }
+
+        public void destroy() throws InterruptedException {
+            history.close();
+            deleteDirectory(dir);
+        }
+
+        public void shouldCompactThemInTheBackground() throws Exception {
+            for (int i = 0; i < 100; i++) {
+                history.add("cmd " + (i % 3));
+            }
+            history.close();
+            specify(history.size() < 100);
+            specify(history.tail(3), should.containInOrder("cmd 1", "cmd 2", "cmd 0"));
+        }
+
+        public void shouldNotCompactAfterBeingClosed() throws Exception {
+            history.close();
+            for (int i = 0; i < 100; i++) {
+                history.commandExecuted("cmd " + (i % 3), null, 0);
+            }
+            specify(history.size(), should.equal(100L));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+import java.io.*;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+@RunWith(JDaveRunner.class)
+public class CommandServerSpec extends Specification<CommandServer> {
+
+    public class AServerWithTextAndBinaryClients {
+
+        private class TargetMock implements CommandService {
+            public String echo(String message) {
+                return message;
+            }
+
+            public String join(String separator, String... words) {
+                StringBuilder sb = new StringBuilder();
+                for (String word : words) {
+                    sb.append(sb.length() > 0 ? separator : "").append(word);
+                }
+                return sb.toString();
+            }
+
+            public int twice(int value) {
+                return value * 2;
+            }
+        }
+
+        private CommandServer server;
+        private Socket socket;
+
+        public CommandServer create() throws IOException {
+            server = new CommandServer(new CommandExecuter(new TargetMock()), 0);
+            socket = new Socket("localhost", server.getPort());
+            return server;
+        }
+
+        public void destroy() throws IOException {
+            socket.close();
+            server.close();
+        }
+
+        public void shouldExecuteTextCommands() throws IOException {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            out.write("echo \"hello world\"\ntwice 21\nunknown\n");
+            out.flush();
+            specify(in.readLine(), should.equal("hello world"));
+            specify(in.readLine(), should.equal("42"));
+            specify(in.readLine(), should.equal("error: command not found: unknown"));
+        }
+
+        public void shouldAnswerTextCommandsWithOneLine() throws IOException {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            out.write("echo \"two\\nlines \\\\\"\ntwice 1\n");
+            out.flush();
+            specify(in.readLine(), should.equal("two\\nlines \\\\"));
+            specify(in.readLine(), should.equal("2"));
+        }
+
+        public void shouldAcceptOnlyLocalClientsByDefault() {
+            specify(server.getBindAddress().isLoopbackAddress());
+        }
+
+        public void shouldExecuteBinaryRequestsByMethodId() throws IOException {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.write(BinaryProtocol.HANDSHAKE);
+            out.flush();
+            List<String> methods = Arrays.asList(BinaryProtocol.readMethodTable(in));
+            specify(methods, should.containInOrder(
+                    "echo(java.lang.String)", "join(java.lang.String, java.lang.String...)", "twice(int)"));
+
+            BinaryProtocol.writeRequest(out, methods.indexOf("join(java.lang.String, java.lang.String...)"), " \"", "a b", null, "c");
+            BinaryProtocol.writeRequest(out, methods.indexOf("twice(int)"), "21");
+            out.flush();
+            specify(BinaryProtocol.readResponse(in), should.equal("a b \"null \"c"));
+            specify(BinaryProtocol.readResponse(in), should.equal("42"));
+        }
+
+        public void shouldReportBinaryRequestsWhichFail() throws IOException {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.write(BinaryProtocol.HANDSHAKE);
+            BinaryProtocol.readMethodTable(in);
+            BinaryProtocol.writeRequest(out, 2, "not a number");
+            BinaryProtocol.writeRequest(out, 99);
+            out.flush();
+            try {
+                BinaryProtocol.readResponse(in);
+                specify(false);
+            } catch (IOException e) {
+                specify(e.getMessage(), should.equal("command not found: twice \"not a number\""));
+            }
+            try {
+                BinaryProtocol.readResponse(in);
+                specify(false);
+            } catch (IOException e) {
+                specify(e.getMessage(), should.equal("unknown method id: 99"));
+            }
+        }
+
+        public void shouldNotTrustTheArgumentCountOfABinaryRequest() throws IOException {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(request);
+            out.writeInt(1000 * 1000);
+            out.writeInt(-1);
+            try {
+                BinaryProtocol.readArguments(new DataInputStream(new ByteArrayInputStream(request.toByteArray())),
+                        CommandServer.DEFAULT_MAX_REQUEST_SIZE);
+                specify(false);
+            } catch (EOFException e) {
+                // the count is not preallocated, so the request fails only when the arguments run out
+            }
+        }
+
+        public void shouldLimitTheTotalSizeOfABinaryRequest() throws IOException {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(request);
+            out.writeInt(3);
+            BinaryProtocol.writeString(out, "12345678");
+            BinaryProtocol.writeString(out, "12345678");
+            BinaryProtocol.writeString(out, "1");
+            try {
+                // 8 + 3 * 4 + 17 bytes
+                BinaryProtocol.readArguments(new DataInputStream(new ByteArrayInputStream(request.toByteArray())), 36);
+                specify(false);
+            } catch (ProtocolException e) {
+                specify(e.getMessage(), should.equal("request is larger than 36 bytes"));
+            }
+            String[] args = BinaryProtocol.readArguments(new DataInputStream(new ByteArrayInputStream(request.toByteArray())), 37);
+            specify(args, should.containInOrder("12345678", "12345678", "1"));
+        }
+
+        public void shouldDisconnectBinaryClientsWhichSendTooLargeRequests() throws IOException {
+            server.setMaxRequestSize(100);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.write(BinaryProtocol.HANDSHAKE);
+            BinaryProtocol.readMethodTable(in);
+            out.writeInt(0);
+            out.writeInt(1);
+            out.writeInt(100); // rejected before the string is sent
+            out.flush();
+            try {
+                BinaryProtocol.readResponse(in);
+                specify(false);
+            } catch (IOException e) {
+                specify(e.getMessage(), should.equal("request is larger than 100 bytes"));
+            }
+            specify(in.read(), should.equal(-1));
+        }
+    }
+}
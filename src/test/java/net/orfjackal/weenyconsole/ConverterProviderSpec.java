@@ -43,6 +43,7 @@ import net.orfjackal.weenyconsole.exceptions.TargetTypeNotSupportedException;
 import org.jmock.Expectations;
 import org.junit.runner.RunWith;
 
+import java.awt.*;
 import java.math.BigInteger;
 
 /**
@@ -155,6 +156,140 @@ public class ConverterProviderSpec extends Specification<ConverterProvider> {
         }
     }
 
+    public class ProviderWithAParent {
+
+        private ConverterProvider parent;
+        private ConverterProvider provider;
+
+        public ConverterProvider create() {
+            parent = new ConverterProvider();
+            parent.addConverter(new StringConstructorConverter());
+            parent.addConverter(new BooleanConverter());
+            parent.makeUnmodifiable();
+            provider = new ConverterProvider(parent);
+            return provider;
+        }
+
+        public void shouldUseTheConvertersOfTheParent() throws ConversionFailedException {
+            specify(provider.converterFor(Boolean.class), should.equal(parent.converterFor(Boolean.class)));
+            specify(provider.valueOf("1", Integer.class), should.equal(1));
+        }
+
+        public void shouldPreferItsOwnConverters() throws ConversionFailedException {
+            final Converter converter = mock(Converter.class);
+            addConverterToProvider(provider, converter, Integer.class);
+            checking(new Expectations() {{
+                one (converter).valueOf("1", Integer.class); will(returnValue(2));
+            }});
+            specify(provider.valueOf("1", Integer.class), should.equal(2));
+            specify(parent.converterFor(Integer.class), should.equal(null));
+        }
+
+        public void shouldConvertPrimitiveTypesLikeTheirWrapperTypes() throws ConversionFailedException {
+            specify(provider.valueOf("1", int.class), should.equal(1));
+            specify(provider.valueOf("true", boolean.class), should.equal(true));
+        }
+
+        public void theParentShouldNotBeModifiableAfterItIsShared() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    parent.addConverter(new DelegatingConverter(int.class, Integer.class));
+                }
+            }, should.raise(UnsupportedOperationException.class));
+        }
+    }
+
+    public class ProviderWithDelegatingConverters {
+
+        private ConverterProvider provider;
+
+        public ConverterProvider create() {
+            provider = new ConverterProvider();
+            provider.addConverter(new StringConstructorConverter());
+            provider.addConverter(new DelegatingConverter(int.class, Integer.class));
+            return provider;
+        }
+
+        public void shouldConvertUsingTheConverterOfTheDelegatedType() throws ConversionFailedException {
+            specify(provider.valueOf("1", int.class), should.equal(1));
+        }
+
+        public void shouldUseTheConvertersWhichAreAddedAfterTheFirstConversion() throws ConversionFailedException {
+            specify(provider.valueOf("1", int.class), should.equal(1));
+            final Converter converter = mock(Converter.class);
+            addConverterToProvider(provider, converter, Integer.class);
+            checking(new Expectations() {{
+                one (converter).valueOf("1", Integer.class); will(returnValue(2));
+            }});
+            specify(provider.valueOf("1", int.class), should.equal(2));
+        }
+    }
+
+    public class ProviderWithAValueCache {
+
+        private ConverterProvider provider;
+        private Converter pointConverter;
+
+        public ConverterProvider create() {
+            ConverterProvider defaults = new ConverterProvider();
+            defaults.addConverter(new StringConstructorConverter());
+            defaults.makeUnmodifiable();
+            provider = new ConverterProvider(defaults);
+            provider.setValueCacheSize(2);
+            pointConverter = mock(CacheableConverter.class, "pointConverter");
+            addConverterToProvider(provider, pointConverter, Point.class);
+            return provider;
+        }
+
+        public void shouldReuseTheValuesOfImmutableTypes() throws ConversionFailedException {
+            Object first = provider.valueOf("1000", Integer.class);
+            specify(provider.valueOf("1000", Integer.class) == first, should.equal(true));
+        }
+
+        public void shouldNotReuseTheValuesOfMutableTypes() throws ConversionFailedException {
+            Object first = provider.valueOf("foo", StringBuffer.class);
+            specify(provider.valueOf("foo", StringBuffer.class) == first, should.equal(false));
+        }
+
+        public void shouldReuseTheValuesOfCacheableConverters() throws ConversionFailedException {
+            checking(new Expectations() {{
+                one (pointConverter).valueOf("1,2", Point.class); will(returnValue(new Point(1, 2)));
+            }});
+            specify(provider.valueOf("1,2", Point.class), should.equal(new Point(1, 2)));
+            specify(provider.valueOf("1,2", Point.class), should.equal(new Point(1, 2)));
+        }
+
+        public void shouldNotReuseTheValuesOfOtherCustomConverters() throws ConversionFailedException {
+            final Converter integerConverter = mock(Converter.class, "integerConverter");
+            addConverterToProvider(provider, integerConverter, Integer.class);
+            checking(new Expectations() {{
+                one (integerConverter).valueOf("1", Integer.class); will(returnValue(1));
+                one (integerConverter).valueOf("1", Integer.class); will(returnValue(2));
+            }});
+            specify(provider.valueOf("1", Integer.class), should.equal(1));
+            specify(provider.valueOf("1", Integer.class), should.equal(2));
+        }
+
+        public void shouldForgetTheCachedValuesWhenTheConvertersChange() throws ConversionFailedException {
+            final Converter otherPointConverter = mock(CacheableConverter.class, "otherPointConverter");
+            checking(new Expectations() {{
+                one (pointConverter).valueOf("1,2", Point.class); will(returnValue(new Point(1, 2)));
+                one (otherPointConverter).valueOf("1,2", Point.class); will(returnValue(new Point(2, 1)));
+            }});
+            specify(provider.valueOf("1,2", Point.class), should.equal(new Point(1, 2)));
+            provider.removeConverterFor(Point.class);
+            addConverterToProvider(provider, otherPointConverter, Point.class);
+            specify(provider.valueOf("1,2", Point.class), should.equal(new Point(2, 1)));
+        }
+
+        public void shouldEvictTheLeastRecentlyUsedValuesOfATargetType() throws ConversionFailedException {
+            Object first = provider.valueOf("1000", Integer.class);
+            provider.valueOf("2000", Integer.class);
+            provider.valueOf("3000", Integer.class);
+            specify(provider.valueOf("1000", Integer.class) == first, should.equal(false));
+        }
+    }
+
     public class ProviderWithManyConvertersInTheSameClassHierarchy {
 
         private ConverterProvider provider;
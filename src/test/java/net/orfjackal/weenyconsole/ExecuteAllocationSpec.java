@@ -0,0 +1,233 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import net.orfjackal.weenyconsole.exceptions.CommandExecutionException;
+import org.junit.runner.RunWith;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Budgets for the garbage which executing a command may create. The numbers are measured with
+ * the per thread allocation counters of HotSpot, after warming up the JIT compiler, and they are
+ * about 2-3 times the values measured when the budgets were set (in the comments), to tolerate
+ * JVM differences.
+ * On HotSpot the counters are required. On other JVMs without the counters the budgets are
+ * not checked, and the skipped checks are reported on the standard error stream.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+@RunWith(JDaveRunner.class)
+public class ExecuteAllocationSpec extends Specification<CommandExecuter> {
+
+    private static final int WARMUP_EXECUTIONS = 10000;
+    private static final int MEASURED_EXECUTIONS = 2000;
+
+    /**
+     * Larger than the cache of parsed commands, so that every execution parses its command.
+     */
+    private static final int DIFFERENT_COMMANDS = 3000;
+
+    private static final long UNMEASURED = -1;
+
+    public static class Target implements CommandService {
+        public long sum;
+
+        public void noop() {
+        }
+
+        public void primitives(int i, double d, boolean b) {
+            sum += i;
+        }
+
+        public void unit(int i, TimeUnit unit) {
+            sum += i;
+        }
+
+        public void add(Integer... values) {
+            for (Integer value : values) {
+                sum += value;
+            }
+        }
+
+        public void fail() {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * @return the average number of bytes which executing the commands allocated,
+     *         or {@link #UNMEASURED} if this JVM can not measure it.
+     * @throws AssertionError if this JVM is HotSpot and can not measure it.
+     */
+    private static long bytesPerExecution(CommandExecuter exec, String... commands) {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            if (isHotSpot()) {
+                throw new AssertionError("the thread allocation counters of HotSpot are not available: " + threads);
+            }
+            return UNMEASURED;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        bean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        executeMany(exec, commands, WARMUP_EXECUTIONS);
+        long before = bean.getThreadAllocatedBytes(threadId);
+        executeMany(exec, commands, MEASURED_EXECUTIONS);
+        long after = bean.getThreadAllocatedBytes(threadId);
+        return (after - before) / MEASURED_EXECUTIONS;
+    }
+
+    private static boolean isHotSpot() {
+        String vmName = System.getProperty("java.vm.name", "");
+        return vmName.contains("HotSpot") || vmName.startsWith("OpenJDK");
+    }
+
+    private static void specifyWithinBudget(long bytesPerExecution, long budget) {
+        if (bytesPerExecution == UNMEASURED) {
+            System.err.println("WARNING: allocation budget not checked, because "
+                    + System.getProperty("java.vm.name") + " has no thread allocation counters");
+            return;
+        }
+        if (bytesPerExecution > budget) {
+            throw new AssertionError("allocated " + bytesPerExecution + " bytes per execution, the budget is " + budget);
+        }
+    }
+
+    private static void executeMany(CommandExecuter exec, String[] commands, int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                exec.execute(commands[i % commands.length]);
+            } catch (CommandExecutionException e) {
+                // failures are measured as well
+            }
+        }
+    }
+
+    private static String[] differentCommands(String format) {
+        String[] commands = new String[DIFFERENT_COMMANDS];
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = String.format(format, i);
+        }
+        return commands;
+    }
+
+    private static String addCommand(int values) {
+        StringBuilder sb = new StringBuilder("add");
+        for (int i = 0; i < values; i++) {
+            sb.append(" %1$d");
+        }
+        return sb.toString();
+    }
+
+    public class ExecutingTheSameCommandRepeatedly {
+
+        private CommandExecuter exec;
+
+        public CommandExecuter create() {
+            exec = new CommandExecuter(new Target());
+            return exec;
+        }
+
+        public void shouldAllocateAlmostNothingForACommandWithNoArguments() {
+            specifyWithinBudget(bytesPerExecution(exec, "noop"), 64); // 24
+        }
+
+        public void shouldAllocateAlmostNothingForACommandWithPrimitiveArguments() {
+            specifyWithinBudget(bytesPerExecution(exec, "primitives 1 2.5 true"), 64); // 24
+        }
+
+        public void shouldAllocateAlmostNothingForACommandWithEnumArguments() {
+            specifyWithinBudget(bytesPerExecution(exec, "unit 1 SECONDS"), 64); // 24
+        }
+
+        public void shouldAllocateOnlyTheVarargArrayForACommandWithVarargs() {
+            specifyWithinBudget(bytesPerExecution(exec, "add 1 2 3 4 5 6 7 8"), 320); // 128
+        }
+    }
+
+    public class ExecutingDifferentCommands {
+
+        private CommandExecuter exec;
+
+        public CommandExecuter create() {
+            exec = new CommandExecuter(new Target());
+            return exec;
+        }
+
+        public void shouldParseAndConvertPrimitiveArgumentsWithinBudget() {
+            specifyWithinBudget(bytesPerExecution(exec, differentCommands("primitives %d 2.5 true")), 5 * 1024); // 1964
+        }
+
+        public void shouldParseAndConvertEnumArgumentsWithinBudget() {
+            specifyWithinBudget(bytesPerExecution(exec, differentCommands("unit %d SECONDS")), 4 * 1024); // 1689
+        }
+
+        public void shouldParseAndConvertVarargsWithinBudget() {
+            specifyWithinBudget(bytesPerExecution(exec, differentCommands(addCommand(8))), 7 * 1024); // 2200-3250
+        }
+
+        public void shouldAllocateLinearlyInTheNumberOfVarargs() {
+            long few = bytesPerExecution(exec, differentCommands(addCommand(50)));
+            long many = bytesPerExecution(exec, differentCommands(addCommand(200)));
+            specifyWithinBudget(many, 5 * few); // 3.7 * few
+        }
+    }
+
+    public class ExecutingFailingCommands {
+
+        private CommandExecuter exec;
+
+        public CommandExecuter create() {
+            exec = new CommandExecuter(new Target());
+            return exec;
+        }
+
+        public void shouldReportAFailingTargetMethodWithinBudget() {
+            specifyWithinBudget(bytesPerExecution(exec, "fail"), 6 * 1024); // 2472
+        }
+
+        public void shouldReportAnUnknownCommandWithinBudget() {
+            specifyWithinBudget(bytesPerExecution(exec, "nosuch"), 4 * 1024); // 1480
+        }
+
+        public void shouldReportAnInvalidArgumentWithinBudget() {
+            specifyWithinBudget(bytesPerExecution(exec, "primitives x 2.5 true"), 12 * 1024); // 4600-4670
+        }
+    }
+}
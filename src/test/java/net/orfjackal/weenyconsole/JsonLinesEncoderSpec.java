@@ -0,0 +1,170 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+@RunWith(JDaveRunner.class)
+public class JsonLinesEncoderSpec extends Specification<JsonLinesEncoder> {
+
+    public class EncodingResults {
+
+        private JsonLinesEncoder encoder;
+
+        public JsonLinesEncoder create() {
+            encoder = new JsonLinesEncoder();
+            return encoder;
+        }
+
+        private String json(Object value) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            encoder.write(value, out);
+            return out.toString("UTF-8");
+        }
+
+        public void shouldWriteOneResultPerLine() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            encoder.write(1, out);
+            encoder.write("two", Channels.newChannel(out));
+            specify(out.toString("UTF-8"), should.equal("1\n\"two\"\n"));
+        }
+
+        public void shouldWriteSimpleValues() throws IOException {
+            specify(json(null), should.equal("null\n"));
+            specify(json(true), should.equal("true\n"));
+            specify(json(42L), should.equal("42\n"));
+            specify(json(1.5), should.equal("1.5\n"));
+            specify(json(Double.NaN), should.equal("\"NaN\"\n"));
+            specify(json(Float.NEGATIVE_INFINITY), should.equal("\"-Infinity\"\n"));
+            specify(json(new BigDecimal("1.50")), should.equal("1.50\n"));
+            specify(json('c'), should.equal("\"c\"\n"));
+            specify(json(Thread.State.NEW), should.equal("\"NEW\"\n"));
+        }
+
+        public void shouldWriteOtherNumbersAsStrings() throws IOException {
+            specify(json(new AtomicInteger(1)), should.equal("\"1\"\n"));
+            specify(json(new Number() {
+                public int intValue() {
+                    return 0;
+                }
+
+                public long longValue() {
+                    return 0;
+                }
+
+                public float floatValue() {
+                    return 0;
+                }
+
+                public double doubleValue() {
+                    return 0;
+                }
+
+                public String toString() {
+                    return "zero";
+                }
+            }), should.equal("\"zero\"\n"));
+        }
+
+        public void shouldReuseItsBufferAfterAFailedResult() throws IOException {
+            final Iterator<Object> failing = new Iterator<Object>() {
+                public boolean hasNext() {
+                    return true;
+                }
+
+                public Object next() {
+                    throw new IllegalStateException("failed");
+                }
+
+                public void remove() {
+                }
+            };
+            try {
+                json(new Iterable<Object>() {
+                    public Iterator<Object> iterator() {
+                        return failing;
+                    }
+                });
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            specify(json(Arrays.asList(1, 2)), should.equal("[1,2]\n"));
+            specify(json("x"), should.equal("\"x\"\n"));
+        }
+
+        public void shouldEscapeStrings() throws IOException {
+            specify(json("a\"b\\c\nd\u0001ä"), should.equal("\"a\\\"b\\\\c\\nd\\u0001ä\"\n"));
+        }
+
+        public void shouldWriteArraysCollectionsAndMaps() throws IOException {
+            specify(json(new int[]{1, 2}), should.equal("[1,2]\n"));
+            specify(json(Arrays.asList("a", null)), should.equal("[\"a\",null]\n"));
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            map.put("x", new String[0]);
+            map.put(2, Collections.singletonMap("y", 3));
+            specify(json(map), should.equal("{\"x\":[],\"2\":{\"y\":3}}\n"));
+        }
+
+        public void shouldWriteTheBeanPropertiesOfOtherObjects() throws IOException {
+            specify(json(new Point(1, 2)), should.equal("{\"x\":1.0,\"y\":2.0}\n"));
+        }
+
+        public void shouldWriteObjectsWithoutPropertiesAsStrings() throws IOException {
+            specify(json(new Object() {
+                public String toString() {
+                    return "custom";
+                }
+            }), should.equal("\"custom\"\n"));
+        }
+
+        public void shouldWriteTooDeeplyNestedValuesAsStrings() throws IOException {
+            List<Object> list = new ArrayList<Object>();
+            list.add(list);
+            specify(json(list).contains("[\"[(this Collection)]\"]"));
+        }
+    }
+}
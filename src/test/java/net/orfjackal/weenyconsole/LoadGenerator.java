@@ -0,0 +1,449 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole;
+
+import net.orfjackal.weenyconsole.exceptions.CommandExecutionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executes a weighted mix of commands from many threads for a while, and reports the throughput
+ * and the latency percentiles. Each thread picks its commands randomly by their weights.
+ * <p/>
+ * With a target rate, the threads execute the commands on a fixed schedule, and the corrected
+ * latencies are measured from when each command should have started, so that a stall also
+ * counts against the commands which it delayed. Without a target rate, the threads execute
+ * the commands back to back, and the corrected latencies are backfilled with the commands
+ * which a stall prevented, at the mean interval measured during the warmup.
+ * <p/>
+ * To run from the command line, see {@link #main(String[])}.
+ *
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+public class LoadGenerator {
+
+    private static final double[] REPORTED_PERCENTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    private final CommandExecuter executer;
+    private final List<String> commands = new ArrayList<String>();
+    private final List<Integer> weights = new ArrayList<Integer>();
+    private volatile int threads = 1;
+    private volatile double rate = 0;
+    private volatile long warmupNanos = TimeUnit.SECONDS.toNanos(1);
+    private volatile long durationNanos = TimeUnit.SECONDS.toNanos(5);
+    private volatile Clock clock = new Clock();
+
+    public LoadGenerator(CommandExecuter executer) {
+        this.executer = executer;
+    }
+
+    public synchronized void addCommand(String command, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("weight must be at least 1: " + weight);
+        }
+        commands.add(command);
+        weights.add(weight);
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * The total number of commands per second which all threads together try to execute,
+     * or 0 (the default) to execute the commands as fast as possible.
+     */
+    public void setRate(double commandsPerSecond) {
+        if (commandsPerSecond < 0) {
+            throw new IllegalArgumentException("rate must not be negative: " + commandsPerSecond);
+        }
+        this.rate = commandsPerSecond;
+    }
+
+    /**
+     * How long to execute commands before measuring them, to let the JIT compiler warm up.
+     */
+    public void setWarmup(long time, TimeUnit unit) {
+        this.warmupNanos = unit.toNanos(time);
+    }
+
+    public void setDuration(long time, TimeUnit unit) {
+        this.durationNanos = unit.toNanos(time);
+    }
+
+    /**
+     * For testing without depending on the speed of the machine.
+     */
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @throws RuntimeException or {@link Error} if executing a command threw something else than
+     *                          a {@link CommandExecutionException}, which means a bug in the executer.
+     *                          It is thrown after all threads have stopped.
+     */
+    public Report run() throws InterruptedException {
+        String[] mix;
+        int[] cumulativeWeights;
+        synchronized (this) {
+            if (commands.isEmpty()) {
+                throw new IllegalStateException("no commands to execute");
+            }
+            mix = commands.toArray(new String[commands.size()]);
+            cumulativeWeights = new int[mix.length];
+            int sum = 0;
+            for (int i = 0; i < mix.length; i++) {
+                sum += weights.get(i);
+                cumulativeWeights[i] = sum;
+            }
+        }
+        int threads = this.threads;
+        double rate = this.rate;
+        Clock clock = this.clock;
+        long intervalNanos = (rate > 0) ? (long) (threads * 1000000000.0 / rate) : 0;
+
+        Report report = new Report();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i, mix, cumulativeWeights, intervalNanos, clock, report, ready, start);
+            Thread t = new Thread(workers[i], "LoadGenerator-" + i);
+            t.setDaemon(true);
+            workers[i].thread = t;
+            t.start();
+        }
+        ready.await();
+        long origin = clock.nanoTime();
+        report.measureFrom = origin + warmupNanos;
+        report.measureUntil = report.measureFrom + durationNanos;
+        for (Worker worker : workers) {
+            worker.origin = origin + intervalNanos * worker.index / threads;
+        }
+        start.countDown();
+        long[] executionsPerThread = new long[threads];
+        for (Worker worker : workers) {
+            worker.thread.join();
+            executionsPerThread[worker.index] = worker.executions;
+        }
+        for (Worker worker : workers) {
+            if (worker.unexpected instanceof Error) {
+                throw (Error) worker.unexpected;
+            }
+            if (worker.unexpected != null) {
+                throw (RuntimeException) worker.unexpected;
+            }
+        }
+        report.executionsPerThread = executionsPerThread;
+        return report;
+    }
+
+    private class Worker implements Runnable {
+
+        private final int index;
+        private final String[] mix;
+        private final int[] cumulativeWeights;
+        private final long intervalNanos;
+        private final Clock clock;
+        private final Report report;
+        private final CountDownLatch ready;
+        private final CountDownLatch start;
+        private final Random random;
+        private Thread thread;
+        private volatile long origin;
+        private volatile long executions;
+        private volatile Throwable unexpected;
+
+        public Worker(int index, String[] mix, int[] cumulativeWeights, long intervalNanos,
+                      Clock clock, Report report, CountDownLatch ready, CountDownLatch start) {
+            this.index = index;
+            this.mix = mix;
+            this.cumulativeWeights = cumulativeWeights;
+            this.intervalNanos = intervalNanos;
+            this.clock = clock;
+            this.report = report;
+            this.ready = ready;
+            this.start = start;
+            this.random = new Random(index);
+        }
+
+        public void run() {
+            ready.countDown();
+            try {
+                start.await();
+                execute();
+            } catch (InterruptedException e) {
+                // stop
+            } catch (RuntimeException e) {
+                unexpected = e;
+            } catch (Error e) {
+                unexpected = e;
+            }
+        }
+
+        private void execute() {
+            long measureFrom = report.measureFrom;
+            long measureUntil = report.measureUntil;
+            long intended = origin;
+            long warmupCount = 0;
+            long warmupNanos = 0;
+            long backfillIntervalNanos = 0;
+            boolean measuring = false;
+            long measuredCount = 0;
+            while (true) {
+                long now = clock.nanoTime();
+                if (intervalNanos > 0) {
+                    while (now < intended) {
+                        clock.parkNanos(intended - now);
+                        now = clock.nanoTime();
+                    }
+                } else {
+                    intended = now;
+                }
+                if (intended >= measureUntil || now >= measureUntil) {
+                    break;
+                }
+                if (!measuring && intended >= measureFrom) {
+                    measuring = true;
+                    if (intervalNanos == 0 && warmupCount > 0) {
+                        backfillIntervalNanos = warmupNanos / warmupCount;
+                    }
+                }
+
+                boolean failed = false;
+                try {
+                    executer.execute(nextCommand());
+                } catch (CommandExecutionException e) {
+                    failed = true;
+                }
+                long end = clock.nanoTime();
+
+                if (measuring) {
+                    report.record(end - now, end - intended, backfillIntervalNanos, failed);
+                    measuredCount++;
+                } else {
+                    warmupCount++;
+                    warmupNanos += end - now;
+                }
+                intended += intervalNanos;
+            }
+            executions = measuredCount;
+        }
+
+        private String nextCommand() {
+            int r = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (r < cumulativeWeights[i]) {
+                    return mix[i];
+                }
+            }
+            throw new AssertionError(r);
+        }
+    }
+
+    static class Clock {
+
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        public void parkNanos(long nanos) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    /**
+     * The results of a load test. The latencies are in nanoseconds and they are
+     * estimated with an error of at most 25 %.
+     */
+    public static class Report {
+
+        private final StripedCounter executions = new StripedCounter();
+        private final StripedCounter failures = new StripedCounter();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LatencyHistogram correctedLatencies = new LatencyHistogram();
+        private volatile long measureFrom;
+        private volatile long measureUntil;
+        private volatile long[] executionsPerThread = new long[0];
+
+        /**
+         * @param backfillIntervalNanos the expected interval of the commands, when they were not
+         *                              executed on a schedule, or 0 when they were.
+         */
+        void record(long latencyNanos, long sinceIntendedStartNanos, long backfillIntervalNanos, boolean failed) {
+            executions.increment();
+            if (failed) {
+                failures.increment();
+            }
+            latencies.record(latencyNanos);
+            correctedLatencies.record(sinceIntendedStartNanos);
+            if (backfillIntervalNanos > 0) {
+                // the commands which the stall prevented from being executed
+                for (long missed = latencyNanos - backfillIntervalNanos; missed >= backfillIntervalNanos; missed -= backfillIntervalNanos) {
+                    correctedLatencies.record(missed);
+                }
+            }
+        }
+
+        public long executions() {
+            return executions.sum();
+        }
+
+        public long failures() {
+            return failures.sum();
+        }
+
+        /**
+         * The measured executions of each thread, in the order of the threads.
+         */
+        public long[] executionsPerThread() {
+            return executionsPerThread.clone();
+        }
+
+        public double throughput() {
+            return executions() / ((measureUntil - measureFrom) / 1000000000.0);
+        }
+
+        /**
+         * @param fraction between 0 and 1, for example 0.99 for the 99th percentile.
+         */
+        public long latency(double fraction) {
+            return latencies.percentile(fraction);
+        }
+
+        /**
+         * Like {@link #latency} but corrected for coordinated omission.
+         */
+        public long correctedLatency(double fraction) {
+            return correctedLatencies.percentile(fraction);
+        }
+
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ENGLISH, "%d commands, %d failures, %.1f commands/s%n",
+                    executions(), failures(), throughput()));
+            sb.append(String.format(Locale.ENGLISH, "%-10s", "us"));
+            for (double fraction : REPORTED_PERCENTILES) {
+                sb.append(String.format(Locale.ENGLISH, "%10s", (fraction < 1.0) ? "p" + percentOf(fraction) : "max"));
+            }
+            sb.append(String.format("%n"));
+            appendPercentiles(sb, "latency", latencies);
+            appendPercentiles(sb, "corrected", correctedLatencies);
+            return sb.toString();
+        }
+
+        private static String percentOf(double fraction) {
+            String percent = String.format(Locale.ENGLISH, "%.1f", fraction * 100);
+            return percent.endsWith(".0") ? percent.substring(0, percent.length() - 2) : percent;
+        }
+
+        private static void appendPercentiles(StringBuilder sb, String title, LatencyHistogram histogram) {
+            sb.append(String.format(Locale.ENGLISH, "%-10s", title));
+            for (double fraction : REPORTED_PERCENTILES) {
+                sb.append(String.format(Locale.ENGLISH, "%10d", TimeUnit.NANOSECONDS.toMicros(histogram.percentile(fraction))));
+            }
+            sb.append(String.format("%n"));
+        }
+    }
+
+    /**
+     * Usage: <tt>LoadGenerator [options] TARGET_CLASS WEIGHT:COMMAND...</tt>
+     * <p/>
+     * The target class must be a {@link CommandService} with a public no-argument constructor.
+     * The options are <tt>-threads N</tt>, <tt>-rate COMMANDS_PER_SECOND</tt>,
+     * <tt>-warmup SECONDS</tt> and <tt>-duration SECONDS</tt>. For example:
+     * <pre>
+     * LoadGenerator -threads 4 -rate 20000 com.example.Shop "9:price apple" "1:buy apple 2"
+     * </pre>
+     */
+    public static void main(String[] args) throws Exception {
+        int i = 0;
+        int threads = 1;
+        double rate = 0;
+        double warmup = 1;
+        double duration = 5;
+        for (; i < args.length && args[i].startsWith("-"); i += 2) {
+            if (i + 1 >= args.length) {
+                usage("missing the value of " + args[i]);
+            }
+            String option = args[i];
+            String value = args[i + 1];
+            if (option.equals("-threads")) {
+                threads = Integer.parseInt(value);
+            } else if (option.equals("-rate")) {
+                rate = Double.parseDouble(value);
+            } else if (option.equals("-warmup")) {
+                warmup = Double.parseDouble(value);
+            } else if (option.equals("-duration")) {
+                duration = Double.parseDouble(value);
+            } else {
+                usage("unknown option " + option);
+            }
+        }
+        if (args.length - i < 2) {
+            usage("the target class and at least one command are required");
+        }
+        CommandService target = (CommandService) Class.forName(args[i++]).getDeclaredConstructor().newInstance();
+        LoadGenerator generator = new LoadGenerator(new CommandExecuter(target));
+        for (; i < args.length; i++) {
+            int separator = args[i].indexOf(':');
+            if (separator < 0) {
+                usage("expected WEIGHT:COMMAND but was " + args[i]);
+            }
+            generator.addCommand(args[i].substring(separator + 1), Integer.parseInt(args[i].substring(0, separator)));
+        }
+        generator.setThreads(threads);
+        generator.setRate(rate);
+        generator.setWarmup((long) (warmup * 1000), TimeUnit.MILLISECONDS);
+        generator.setDuration((long) (duration * 1000), TimeUnit.MILLISECONDS);
+        System.out.print(generator.run());
+    }
+
+    /**
+     * Throws instead of exiting, because Maven may run this in its own JVM.
+     */
+    private static void usage(String error) {
+        throw new IllegalArgumentException(error + "\nUsage: LoadGenerator [-threads N] [-rate COMMANDS_PER_SECOND]"
+                + " [-warmup SECONDS] [-duration SECONDS] TARGET_CLASS WEIGHT:COMMAND...");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+@RunWith(JDaveRunner.class)
+public class LoadGeneratorSpec extends Specification<LoadGenerator> {
+
+    /**
+     * Also usable from the command line, see the <tt>load-test</tt> profile in the POM.
+     */
+    public static class SampleTarget implements CommandService {
+        private final AtomicInteger fastCalls = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        public void fast() {
+            fastCalls.incrementAndGet();
+        }
+
+        public void slow(int millis) throws InterruptedException {
+            slowCalls.incrementAndGet();
+            Thread.sleep(millis);
+        }
+
+        public void fail() {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Takes a fixed time to execute on the {@link FakeClock}.
+     */
+    private static class TimedTarget implements CommandService {
+        private final FakeClock clock;
+        private final AtomicInteger fastCalls = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        public TimedTarget(FakeClock clock) {
+            this.clock = clock;
+        }
+
+        public void fast() {
+            fastCalls.incrementAndGet();
+            clock.advance(TimeUnit.MICROSECONDS.toNanos(10));
+        }
+
+        public void slow(int millis) {
+            slowCalls.incrementAndGet();
+            clock.advance(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        public void fail() {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static class FakeClock extends LoadGenerator.Clock {
+        private final AtomicLong now = new AtomicLong();
+
+        public long nanoTime() {
+            return now.get();
+        }
+
+        public void parkNanos(long nanos) {
+            advance(nanos);
+        }
+
+        public void advance(long nanos) {
+            now.addAndGet(nanos);
+        }
+    }
+
+    public class ALoadGenerator {
+
+        private TimedTarget target;
+        private LoadGenerator generator;
+
+        public LoadGenerator create() {
+            FakeClock clock = new FakeClock();
+            target = new TimedTarget(clock);
+            generator = new LoadGenerator(new CommandExecuter(target));
+            generator.setClock(clock);
+            generator.setWarmup(50, TimeUnit.MILLISECONDS);
+            generator.setDuration(300, TimeUnit.MILLISECONDS);
+            return generator;
+        }
+
+        public void shouldExecuteTheCommandsOfTheMix() throws InterruptedException {
+            generator.addCommand("fast", 9);
+            generator.addCommand("fail", 1);
+            LoadGenerator.Report report = generator.run();
+            specify(report.executions() > 0);
+            specify(report.failures() > 0);
+            specify(report.failures() < report.executions());
+            specify(target.fastCalls.get() > report.failures());
+            specify(report.latency(0.5) <= report.latency(1.0));
+            specify(report.toString().contains("commands/s"));
+        }
+
+        public void shouldKeepToTheTargetRate() throws InterruptedException {
+            generator.addCommand("fast", 1);
+            generator.setRate(1000);
+            LoadGenerator.Report report = generator.run();
+            specify(report.executions(), should.equal(300L));
+        }
+
+        public void shouldCountAStallAgainstTheDelayedCommandsWhenUsingATargetRate() throws InterruptedException {
+            generator.addCommand("fast", 49);
+            generator.addCommand("slow 20", 1);
+            generator.setRate(1000);
+            LoadGenerator.Report report = generator.run();
+            specify(target.slowCalls.get() > 0);
+            specify(report.correctedLatency(0.9) > report.latency(0.9));
+        }
+
+        public void shouldBackfillTheCommandsWhichAStallPreventedWhenNotUsingATargetRate() throws InterruptedException {
+            generator.addCommand("fast", 999);
+            generator.addCommand("slow 20", 1);
+            LoadGenerator.Report report = generator.run();
+            specify(target.slowCalls.get() > 0);
+            specify(report.correctedLatency(0.99) > report.latency(0.99));
+        }
+    }
+
+    public class ALoadGeneratorWithManyThreads {
+
+        private SampleTarget target;
+        private LoadGenerator generator;
+
+        public LoadGenerator create() {
+            target = new SampleTarget();
+            generator = new LoadGenerator(new CommandExecuter(target));
+            generator.setThreads(2);
+            generator.setWarmup(10, TimeUnit.MILLISECONDS);
+            generator.setDuration(100, TimeUnit.MILLISECONDS);
+            return generator;
+        }
+
+        public void shouldExecuteTheCommandsFromAllThreads() throws InterruptedException {
+            generator.addCommand("fast", 1);
+            LoadGenerator.Report report = generator.run();
+            specify(report.executions() > 0);
+            specify(target.fastCalls.get() >= report.executions());
+            long[] executionsPerThread = report.executionsPerThread();
+            specify(executionsPerThread.length, should.equal(2));
+            specify(executionsPerThread[0] > 0);
+            specify(executionsPerThread[1] > 0);
+            specify(executionsPerThread[0] + executionsPerThread[1], should.equal(report.executions()));
+        }
+
+        public void shouldRethrowWhatTheExecuterThrowsUnexpectedly() throws InterruptedException {
+            generator = new LoadGenerator(new CommandExecuter(target) {
+                public Object execute(String command) {
+                    throw new IllegalStateException("bug in the executer");
+                }
+            });
+            generator.addCommand("fast", 1);
+            specify(new Block() {
+                public void run() throws Throwable {
+                    generator.run();
+                }
+            }, should.raise(IllegalStateException.class, "bug in the executer"));
+        }
+    }
+}
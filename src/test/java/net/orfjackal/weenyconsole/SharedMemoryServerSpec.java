@@ -0,0 +1,169 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+@RunWith(JDaveRunner.class)
+public class SharedMemoryServerSpec extends Specification<SharedMemoryServer> {
+
+    private class TargetMock implements CommandService {
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        public String echo(String message) {
+            return message;
+        }
+
+        public String repeat(String s, int times) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < times; i++) {
+                sb.append(s);
+            }
+            return sb.toString();
+        }
+
+        public void block() throws InterruptedException {
+            released.await();
+        }
+
+        public void nothing() {
+        }
+    }
+
+    public class AClientInAnotherProcess {
+
+        private File file;
+        private TargetMock target;
+        private SharedMemoryServer server;
+        private SharedMemoryClient client;
+
+        public SharedMemoryServer create() throws IOException {
+            file = File.createTempFile("shm", ".ring");
+            target = new TargetMock();
+            // the client maps the file separately, the same as another process would
+            server = new SharedMemoryServer(new CommandExecuter(target), file, 64, WaitStrategy.PARK);
+            client = new SharedMemoryClient(file, WaitStrategy.BUSY_SPIN);
+            return server;
+        }
+
+        public void destroy() throws InterruptedException {
+            target.released.countDown();
+            server.close();
+            file.delete();
+        }
+
+        public void shouldExecuteCommandsAndReturnTheResults() throws IOException {
+            specify(client.execute("echo \"hello äö\""), should.equal("hello äö"));
+            specify(client.execute("nothing"), should.equal(null));
+        }
+
+        public void shouldReportTheErrors() throws IOException {
+            try {
+                client.execute("unknown");
+                specify(false);
+            } catch (IOException e) {
+                specify(e.getMessage(), should.equal("command not found: unknown"));
+            }
+        }
+
+        public void shouldReportResultsWhichDoNotFitAsErrors() throws IOException {
+            try {
+                client.execute("repeat ä 40");
+                specify(false);
+            } catch (IOException e) {
+                specify(e.getMessage().startsWith("the result of 80 bytes does not fit"));
+            }
+            specify(client.execute("echo ok"), should.equal("ok"));
+        }
+
+        public void shouldStopWaitingWhenTheServerIsClosed() throws Exception {
+            server.close();
+            try {
+                client.execute("nothing");
+                specify(false);
+            } catch (IOException e) {
+                specify(e.getMessage(), should.equal("the server was closed: nothing"));
+            }
+        }
+
+        public void shouldStopWaitingAfterTheTimeout() throws IOException {
+            try {
+                client.execute("block", 10, TimeUnit.MILLISECONDS);
+                specify(false);
+            } catch (IOException e) {
+                specify(e.getMessage(), should.equal("timed out: block"));
+            }
+            try {
+                client.execute("nothing");
+                specify(false);
+            } catch (IOException e) {
+                specify(e.getMessage(), should.equal("an earlier command timed out"));
+            }
+        }
+
+        public void shouldReuseTheRingBuffersWhenTheyWrapAround() throws IOException {
+            for (int i = 0; i < 1000; i++) {
+                specify(client.execute("echo message" + i), should.equal("message" + i));
+            }
+        }
+    }
+
+    public class WhenTheServerHasNotBeenStarted {
+
+        public SharedMemoryServer create() {
+            return null;
+        }
+
+        public void shouldNotConnect() throws IOException {
+            File file = File.createTempFile("shm", ".ring");
+            try {
+                new SharedMemoryClient(file, WaitStrategy.PARK);
+                specify(false);
+            } catch (IOException e) {
+                specify(e.getMessage(), should.equal("the server has not been started"));
+            } finally {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole.converters;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import net.orfjackal.weenyconsole.Converter;
+import net.orfjackal.weenyconsole.exceptions.ConversionFailedException;
+import net.orfjackal.weenyconsole.exceptions.InvalidSourceValueException;
+import org.junit.runner.RunWith;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+@RunWith(JDaveRunner.class)
+public class InetAddressConverterSpec extends Specification<Converter> {
+
+    public class AnInetAddressConverter {
+
+        private InetAddressConverter converter;
+
+        public Converter create() {
+            converter = new InetAddressConverter();
+            return converter;
+        }
+
+        private void shouldConvert(String literal, byte[] address) throws ConversionFailedException, UnknownHostException {
+            specify(converter.valueOf(literal, InetAddress.class), should.equal(InetAddress.getByAddress(address)));
+        }
+
+        private void shouldBeInvalid(final String literal, final Class<?> targetType) {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    converter.valueOf(literal, targetType);
+                }
+            }, should.raise(InvalidSourceValueException.class));
+        }
+
+        public void shouldConvertIPv4Literals() throws ConversionFailedException, UnknownHostException {
+            shouldConvert("127.0.0.1", new byte[]{127, 0, 0, 1});
+            shouldConvert("255.255.255.255", new byte[]{-1, -1, -1, -1});
+        }
+
+        public void shouldConvertIPv6Literals() throws ConversionFailedException, UnknownHostException {
+            shouldConvert("::", new byte[16]);
+            shouldConvert("::1", new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1});
+            shouldConvert("fe80::", new byte[]{-2, -128, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+            shouldConvert("1:2:3:4:5:6:7:8", new byte[]{0, 1, 0, 2, 0, 3, 0, 4, 0, 5, 0, 6, 0, 7, 0, 8});
+            shouldConvert("1::ffff:10.0.0.1", new byte[]{0, 1, 0, 0, 0, 0, 0, 0, 0, 0, -1, -1, 10, 0, 0, 1});
+        }
+
+        public void shouldNotResolveHostNames() {
+            shouldBeInvalid("localhost", InetAddress.class);
+            shouldBeInvalid("example.com", InetAddress.class);
+        }
+
+        public void shouldNotConvertMalformedLiterals() {
+            shouldBeInvalid("", InetAddress.class);
+            shouldBeInvalid("1.2.3", InetAddress.class);
+            shouldBeInvalid("1.2.3.4.5", InetAddress.class);
+            shouldBeInvalid("1.2.3.256", InetAddress.class);
+            shouldBeInvalid("1::2::3", InetAddress.class);
+            shouldBeInvalid("1:2:3:4:5:6:7:8:9", InetAddress.class);
+            shouldBeInvalid("1:2:3:4:5:6:7:8::", InetAddress.class);
+            shouldBeInvalid("12345::", InetAddress.class);
+            shouldBeInvalid(":1", InetAddress.class);
+            shouldBeInvalid("1:", InetAddress.class);
+        }
+
+        public void shouldAcceptOnlyAsciiDigits() {
+            shouldBeInvalid("::\uff11", InetAddress.class);
+            shouldBeInvalid("::\u0661", InetAddress.class);
+            shouldBeInvalid("1.2.3.\u0664", InetAddress.class);
+        }
+
+        public void shouldConvertOnlyToTheRequestedAddressFamily() {
+            shouldBeInvalid("::1", Inet4Address.class);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of WeenyConsole <http://www.orfjackal.net/>
+ *
+ * Copyright (c) 2007-2008, Esko Luontola. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *
+ *     * Neither the name of the copyright holder nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.orfjackal.weenyconsole.converters;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import net.orfjackal.weenyconsole.Converter;
+import net.orfjackal.weenyconsole.exceptions.ConversionFailedException;
+import net.orfjackal.weenyconsole.exceptions.TargetTypeNotSupportedException;
+import org.junit.runner.RunWith;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Esko Luontola
+ * @since 18.10.2026
+ */
+@RunWith(JDaveRunner.class)
+public class NumberConverterSpec extends Specification<Converter> {
+
+    private static final Class<?>[] NUMBER_TYPES = {
+            Integer.class, Long.class, Double.class, Float.class, Short.class, Byte.class,
+            BigDecimal.class, BigInteger.class
+    };
+
+    private static final String[] EDGE_CASES = {
+            "0", "-0", "+0", "1", "-1", "+1", "--1", "+-1", "", " ", " 1", "1 ", "1_000", "1,000",
+            "007", "0x10", "#10", "1L", "1d", "1f", "1.", ".5", "1.5", "-1.5", "1e3", "1E-3", "1e", "e3",
+            "0x1p3", "NaN", "-NaN", "Infinity", "-Infinity", "+Infinity", "infinity",
+            "1e400", "-1e400", "4.9e-324", "2e-324", "1.4e-45", "3.5e38", "0.1000000000000000055511151231257827",
+            "\u0661\u0662", "\uff11", "\u0664.\u0665",
+            "127", "128", "-128", "-129", "32767", "32768", "-32768", "-32769",
+            "2147483647", "2147483648", "-2147483648", "-2147483649",
+            "9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+            "123456789012345678901234567890", "1.00", "1e-1000",
+    };
+
+    public class ANumberConverter {
+
+        private NumberConverter converter;
+        private StringConstructorConverter reference;
+
+        public Converter create() {
+            converter = new NumberConverter();
+            reference = new StringConstructorConverter();
+            return converter;
+        }
+
+        private Object resultOf(Converter converter, String sourceValue, Class<?> targetType) {
+            try {
+                return converter.valueOf(sourceValue, targetType);
+            } catch (ConversionFailedException e) {
+                return e.getClass();
+            }
+        }
+
+        /**
+         * The string constructors of the JDK have always been used for the numbers,
+         * so the conversions must not change the accepted values or their results.
+         */
+        public void shouldGiveTheSameResultsAsTheStringConstructors() {
+            for (Class<?> type : NUMBER_TYPES) {
+                for (String sourceValue : EDGE_CASES) {
+                    Object expected = resultOf(reference, sourceValue, type);
+                    Object actual = resultOf(converter, sourceValue, type);
+                    specify(actual, should.equal(expected));
+                }
+            }
+        }
+
+        public void shouldLeaveOtherNumberTypesToTheOtherConverters() {
+            specify(new Block() {
+                public void run() throws Throwable {
+                    converter.valueOf("1", AtomicInteger.class);
+                }
+            }, should.raise(TargetTypeNotSupportedException.class));
+        }
+    }
+}